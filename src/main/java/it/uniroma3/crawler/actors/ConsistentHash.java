@@ -0,0 +1,62 @@
+package it.uniroma3.crawler.actors;
+
+import static it.uniroma3.crawler.actors.frontier.FingerprintSet.fingerprint;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A ConsistentHash is a ring of named nodes, each one placed at a number of
+ * virtual positions given by the fingerprint of its name.
+ * <br>
+ * A key belongs to the first node found clockwise from the fingerprint of the key,
+ * so that adding or removing a node only moves the keys of that node.
+ * @param <T> the type of the nodes
+ */
+class ConsistentHash<T> {
+	private final TreeMap<Long, T> ring;
+	private final int replicas;
+
+	/**
+	 * Constructs a new empty ring.
+	 * @param replicas the number of virtual positions of each node
+	 */
+	ConsistentHash(int replicas) {
+		this.ring = new TreeMap<>();
+		this.replicas = replicas;
+	}
+
+	/**
+	 * Adds the given node to this ring
+	 * @param name the unique name of the node
+	 * @param node the node
+	 */
+	void add(String name, T node) {
+		for (int i=0; i<replicas; i++)
+			ring.put(fingerprint(name+"#"+i), node);
+	}
+
+	/**
+	 * Removes the node with the given name from this ring
+	 * @param name the name of the node
+	 */
+	void remove(String name) {
+		for (int i=0; i<replicas; i++)
+			ring.remove(fingerprint(name+"#"+i));
+	}
+
+	/**
+	 * @param key the key, i.e. a URL
+	 * @return the node the key belongs to, or null if the ring is empty
+	 */
+	T get(String key) {
+		if (ring.isEmpty()) return null;
+		Map.Entry<Long, T> entry = ring.ceilingEntry(fingerprint(key));
+		return (entry!=null) ? entry.getValue() : ring.firstEntry().getValue();
+	}
+
+	boolean isEmpty() {
+		return ring.isEmpty();
+	}
+
+}
@@ -1,24 +1,27 @@
 package it.uniroma3.crawler.actors;
 
-import static akka.pattern.PatternsCS.ask;
-import static akka.pattern.PatternsCS.pipe;
 import static it.uniroma3.crawler.util.Commands.*;
 
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
 import akka.actor.ActorSelection;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.messages.SaveMsg;
 import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.util.FileUtils;
 import scala.concurrent.duration.Duration;
 
 public class CrawlCache extends AbstractLoggingActor {
+	private final static long TICK_MILLIS = 100;
+	private final static long SAVE_TIMEOUT = 100000;
 	private final int id;
 	private final ActorRef extractor;
+	private final PendingRequests<CrawlURL> requests; // saves waiting for the repository
+	private final Cancellable ticker;
 	
 	static public class ResultMsg {
 		private final CrawlURL curl;
@@ -42,13 +45,26 @@ public class CrawlCache extends AbstractLoggingActor {
 		this.id = Integer.parseInt(self().path().name().replace("cache", ""));
 		String extract = "extractor" + id;
 		this.extractor = context().actorOf(Props.create(CrawlExtractor.class), extract);
+		this.requests = new PendingRequests<>(SAVE_TIMEOUT, TICK_MILLIS, System.currentTimeMillis());
+		this.ticker = context().system().scheduler().schedule(
+				Duration.create(TICK_MILLIS, TimeUnit.MILLISECONDS), 
+				Duration.create(TICK_MILLIS, TimeUnit.MILLISECONDS), 
+				self(), TICK, context().dispatcher(), self());
+	}
+	
+	@Override
+	public void postStop() throws Exception {
+		ticker.cancel();
+		super.postStop();
 	}
 	
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
 		.match(CrawlURL.class, this::requestSave)
-		.match(ResultMsg.class, this::sendSavedCurl)
+		.match(ResponseMsg.class, this::saveResponse)
+		.matchEquals(TICK, msg -> expire())
+		.match(CrawlExtractor.ResultMsg.class, msg -> extractor.forward(msg, context()))
 		.build();
 	}
 	
@@ -56,15 +72,24 @@ public class CrawlCache extends AbstractLoggingActor {
 		String url = curl.getStringUrl();
 		ActorSelection repository = context().actorSelection(REPOSITORY);
 		
-		CompletableFuture<Object> future = 
-				ask(repository, new SaveMsg(url), 100000)
-				.toCompletableFuture();
-		
-		CompletableFuture<ResultMsg> result = future.thenApply(v -> {
-			Short code = (Short) future.join();
-			return new ResultMsg(curl,code);
-		});
-		pipe(result, context().dispatcher()).to(self());
+		long request = requests.add(curl, System.currentTimeMillis());
+		repository.tell(new RequestMsg(request, url, new SaveMsg(url)), self());
+	}
+	
+	private void saveResponse(ResponseMsg response) {
+		CrawlURL curl = requests.complete(response.getId());
+		if (curl==null) return; // already expired
+		sendSavedCurl(new ResultMsg(curl, (Short) response.getResponse()));
+	}
+	
+	/*
+	 * Handles the saves the repository did not answer in time as failed
+	 */
+	private void expire() {
+		for (CrawlURL curl : requests.expire(System.currentTimeMillis())) {
+			log().warning("save: TIMEOUT "+curl.getStringUrl());
+			sendSavedCurl(new ResultMsg(curl, ERROR));
+		}
 	}
 	
 	private void sendSavedCurl(ResultMsg msg) {
@@ -75,6 +100,9 @@ public class CrawlCache extends AbstractLoggingActor {
 			// Stop crawlPage actor
 			context().actorSelection(REPOSITORY)
 			.tell(new StopMsg(curl.getStringUrl()), self());
+			// release the lease of the cUrl
+			context().actorSelection(FRONTIER+FileUtils.normalizeURL(curl.getDomain()))
+			.tell(new OldURLMsg(curl), self());
 		}
 	}
 
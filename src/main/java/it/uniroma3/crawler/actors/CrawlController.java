@@ -17,6 +17,7 @@ import it.uniroma3.crawler.settings.CrawlerSettings.SeedConfig;
 
 public class CrawlController extends AbstractLoggingActor {
 	private CrawlerSettings set;
+	private ActorRef pool;
 	private int frontiers, models;
 	
 	public CrawlController() {
@@ -42,6 +43,10 @@ public class CrawlController extends AbstractLoggingActor {
     private void startCrawling() {
     	context().watch(context().actorOf(Props.create(CrawlRepository.class),
     			"repository"));
+    	if (set.pool>0) {
+    		pool = context().actorOf(Props.create(CrawlFetcherPool.class), "pool");
+    		pool.tell(START, self());
+    	}
     	initModels();
     }
     
@@ -68,17 +73,26 @@ public class CrawlController extends AbstractLoggingActor {
     private void initFrontier(PageClass root) {
     	ActorRef frontier = createFrontier(root);
     	context().watch(frontier);
+    	if (pool!=null)
+    		pool.tell(new CrawlFetcherPool.RegisterMsg(frontier, weight(root)), self());
     	frontier.tell(START, self());
     }
     
     private ActorRef createFrontier(PageClass pclass) {
     	String name = FileUtils.normalizeURL(pclass.getDomain());
 		ActorRef frontier = context().actorOf(
-				CrawlFrontier.props(set.fetchers, set.pages, set.frontierheap, pclass), 
+				CrawlFrontier.props(set, pclass, pool), 
     			"frontier_"+name);
     	return frontier;
     }
     
+    private int weight(PageClass root) {
+    	String name = FileUtils.normalizeURL(root.getDomain());
+    	return set.seeds.stream()
+    			.filter(conf -> FileUtils.normalizeURL(conf.site).equals(name))
+    			.mapToInt(conf -> conf.weight).findFirst().orElse(1);
+    }
+    
     private void stop() {
     	if (--frontiers==0)
     		context().system().terminate();
@@ -1,94 +1,137 @@
 package it.uniroma3.crawler.actors;
 
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
-
-import static java.nio.file.Files.exists;
-import static java.nio.file.Files.createDirectories;
+import static it.uniroma3.crawler.util.Commands.TICK;
 
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import akka.actor.AbstractLoggingActor;
+import akka.actor.Cancellable;
 import it.uniroma3.crawler.model.CrawlURL;
 import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.settings.CrawlerSettings;
+import it.uniroma3.crawler.settings.Settings;
 import it.uniroma3.crawler.util.FileUtils;
+import scala.concurrent.duration.Duration;
 
+/**
+ * CrawlDataWriter saves the records extracted from the crawled pages
+ * in a csv file for each PageClass of each website.
+ * <br>
+ * The output files are kept open in a {@link RecordSink} each:
+ * buffered records are written when a buffer is full, at every flush interval,
+ * and when the writer is stopped.
+ */
 public class CrawlDataWriter extends AbstractLoggingActor {
-	
+	private final Map<String, RecordSink> sinks; // by output file
+	private final int bufferSize;
+	private final boolean gzip;
+	private final long rollSize;
+	private final Cancellable ticker;
+
+	public CrawlDataWriter() {
+		CrawlerSettings set = Settings.SettingsProvider.get(context().system());
+		this.sinks = new HashMap<>();
+		this.bufferSize = set.recordbuffer;
+		this.gzip = set.recordgzip;
+		this.rollSize = set.recordroll;
+		this.ticker = (set.recordflush>0) ?
+				context().system().scheduler().schedule(
+				Duration.create(set.recordflush, TimeUnit.SECONDS),
+				Duration.create(set.recordflush, TimeUnit.SECONDS),
+				self(), TICK, context().dispatcher(), self()) : null;
+	}
+
+	@Override
+	public void postStop() throws Exception {
+		if (ticker!=null) ticker.cancel();
+		for (RecordSink sink : sinks.values()) {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				log().error("Can't save records to csv");
+			}
+		}
+		super.postStop();
+	}
+
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
 		.match(CrawlURL.class, this::write)
+		.matchEquals(TICK, msg -> flush())
 		.build();
 	}
-	
+
 	private void write(CrawlURL curl) {
 		PageClass src = curl.getPageClass();
 		String[] record = curl.getRecord();
 		if (record!=null) {
-						
-			String[] newRec = new String[record.length+1];
-			newRec[0] = curl.getStringUrl();
-			for (int i=0;i<record.length;i++) {
-				newRec[i+1] = record[i];
-			}
-			
-			String output = FileUtils.getRecordDirectory(src.getDomain());
-			Path dir = Paths.get(output);
-	    	if (!exists(dir)) {
-				try {
-					createDirectories(dir);
-				} catch (IOException e) {
-					log().error("Can't create output directory");
-					return;
+			String url = curl.getStringUrl();
+			RecordSink sink = getSink(src);
+			if (sink==null) return;
+			try {
+				if (record.length==1 && record[0].contains("\t")) {
+					for (String r : record[0].split("\t"))
+						sink.write(new String[] {url, r});
 				}
-	    	}
-			String file = dir+"/"+src.getName()+".csv";
-
-			if (!exists(Paths.get(file))) // save file header
-				saveRecord(src.getDataFieldNames(), file);
-			saveRecord(newRec, file);
-			
-			//TODO
-			//saveWARC(curl)
+				else {
+					String[] newRec = new String[record.length+1];
+					newRec[0] = url;
+					System.arraycopy(record, 0, newRec, 1, record.length);
+					sink.write(newRec);
+				}
+				if (ticker==null) sink.flush();
+			} catch (IOException e) {
+				log().error("Can't save record to csv");
+				close(src);
+			}
 		}
 	}
-	
-	private void saveRecord(String[] record, String file) {
-		try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true),
-				StandardCharsets.UTF_8)) {
-			if (record.length==2 && record[1].contains("\t"))
-				writeMultipleRecords(out, record);
-			else
-				writeSingleRecord(out, record);
-		} catch (IOException e) {
-			log().error("Can't save record to csv");
+
+	private RecordSink getSink(PageClass src) {
+		String output = FileUtils.getRecordDirectory(src.getDomain());
+		String key = output+"/"+src.getName();
+		RecordSink sink = sinks.get(key);
+		if (sink==null) {
+			File dir = new File(output);
+			if (!dir.isDirectory() && !dir.mkdirs()) {
+				log().error("Can't create output directory");
+				return null;
+			}
+			try {
+				sink = new RecordSink(dir, src.getName(), src.getDataFieldNames(),
+						bufferSize, gzip, rollSize);
+				sinks.put(key, sink);
+			} catch (IOException e) {
+				log().error("Can't open csv output file");
+				return null;
+			}
 		}
+		return sink;
 	}
-	
-	private void writeSingleRecord(Writer csvOutput, String[] record) 
-			throws IOException {
-		int len = record.length;
-		for (int i=0;i<len;i++) {
-			csvOutput.write(record[i]);
-			if (i<len-1)
-				csvOutput.write("\t");
+
+	private void close(PageClass src) {
+		String key = FileUtils.getRecordDirectory(src.getDomain())+"/"+src.getName();
+		RecordSink sink = sinks.remove(key);
+		try {
+			if (sink!=null) sink.close();
+		} catch (IOException e) {
+			return; // already reported
 		}
-		if (len>0) csvOutput.write("\n");
-		csvOutput.close();
 	}
-	
-	private void writeMultipleRecords(Writer csvOutput, String[] records) 
-			throws IOException {
-		for (String r : records[1].split("\t")) {
-			csvOutput.write(records[0]+"\t"+r);
-			csvOutput.write("\n");
+
+	private void flush() {
+		for (RecordSink sink : sinks.values()) {
+			try {
+				sink.flush();
+			} catch (IOException e) {
+				log().error("Can't save records to csv");
+			}
 		}
-		csvOutput.close();
 	}
 
 }
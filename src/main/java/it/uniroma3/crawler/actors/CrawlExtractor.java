@@ -1,29 +1,50 @@
 package it.uniroma3.crawler.actors;
 
-import static akka.pattern.PatternsCS.ask;
-import static akka.pattern.PatternsCS.pipe;
-import static java.util.concurrent.CompletableFuture.allOf;
-import static java.util.concurrent.CompletableFuture.completedFuture;
-
 import static it.uniroma3.crawler.util.Commands.REPOSITORY;
+import static it.uniroma3.crawler.util.Commands.TICK;
 
 import static it.uniroma3.crawler.factories.CrawlURLFactory.copy;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
 import akka.actor.ActorSelection;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.model.CrawlURL;
 import it.uniroma3.crawler.model.PageClass;
+import scala.concurrent.duration.Duration;
 
 public class CrawlExtractor extends AbstractLoggingActor {
+	private final static long TICK_MILLIS = 100;
+	private final static long EXTRACT_TIMEOUT = 10000;
 	private final int id;
 	private final ActorRef scheduler;
+	private final PendingRequests<Extraction> requests; // extractions waiting for the repository
+	private final Cancellable ticker;
+	
+	/*
+	 * The extraction of links and data of a CrawlURL, 
+	 * complete when all its requests are answered or expired
+	 */
+	private static class Extraction {
+		private final CrawlURL curl;
+		private Map<String, List<String>> outLinks;
+		private List<String> record;
+		private int waiting;
+		
+		Extraction(CrawlURL curl) {
+			this.curl = curl;
+			this.outLinks = new HashMap<>();
+			this.record = new ArrayList<>();
+		}
+	}
 	
 	static public class ResultMsg {
 		private final CrawlURL curl;
@@ -53,6 +74,17 @@ public class CrawlExtractor extends AbstractLoggingActor {
 		this.id = Integer.parseInt(self().path().name().replace("extractor", ""));
 		String sched = "scheduler" + id;
 		this.scheduler = context().actorOf(Props.create(CrawlLinkScheduler.class), sched);
+		this.requests = new PendingRequests<>(EXTRACT_TIMEOUT, TICK_MILLIS, System.currentTimeMillis());
+		this.ticker = context().system().scheduler().schedule(
+				Duration.create(TICK_MILLIS, TimeUnit.MILLISECONDS), 
+				Duration.create(TICK_MILLIS, TimeUnit.MILLISECONDS), 
+				self(), TICK, context().dispatcher(), self());
+	}
+	
+	@Override
+	public void postStop() throws Exception {
+		ticker.cancel();
+		super.postStop();
 	}
 	
 	@Override
@@ -60,6 +92,8 @@ public class CrawlExtractor extends AbstractLoggingActor {
 		return receiveBuilder()
 		.match(CrawlURL.class, this::extract)
 		.match(ResultMsg.class, this::forward)
+		.match(ResponseMsg.class, this::extractResponse)
+		.matchEquals(TICK, msg -> expire())
 		.build();
 	}
 	
@@ -69,29 +103,51 @@ public class CrawlExtractor extends AbstractLoggingActor {
 		String url = curl.getStringUrl();
 
 		ActorSelection repository = context().actorSelection(REPOSITORY);
-		CompletableFuture<Object> links, data;
-
-		if (!src.isEndPage())
-			links = ask(repository,
-					new ExtractLinksMsg(url, src.getNavigationXPaths(), src.getFormXPaths())
-					, 10000).toCompletableFuture();
-		else
-			links = completedFuture(new ExtractedLinksMsg());
-
-		if (src.isDataPage())
-			data = ask(repository, 
-					new ExtractDataMsg(url, src.xPathToData())
-					, 10000).toCompletableFuture();
-		else
-			data = completedFuture(new ExtractedDataMsg());
-
-		CompletableFuture<ResultMsg> result = allOf(links, data).thenApply(v -> {
-			ExtractedLinksMsg msg1 = (ExtractedLinksMsg) links.join();
-			ExtractedDataMsg msg2 = (ExtractedDataMsg) data.join();
-			return new ResultMsg(curl, msg1.getLinks(), msg2.getRecord());
-		});
-
-		pipe(result, context().dispatcher()).to(self());
+		Extraction extraction = new Extraction(curl);
+		long now = System.currentTimeMillis();
+		
+		if (!src.isEndPage()) {
+			extraction.waiting++;
+			repository.tell(new RequestMsg(requests.add(extraction, now), url, 
+					new ExtractLinksMsg(url, src.getNavigationXPaths(), src.getFormXPaths())), 
+					self());
+		}
+		if (src.isDataPage()) {
+			extraction.waiting++;
+			repository.tell(new RequestMsg(requests.add(extraction, now), url, 
+					new ExtractDataMsg(url, src.xPathToData())), 
+					self());
+		}
+		if (extraction.waiting==0) 
+			forward(new ResultMsg(curl, extraction.outLinks, extraction.record));
+	}
+	
+	private void extractResponse(ResponseMsg response) {
+		Extraction extraction = requests.complete(response.getId());
+		if (extraction==null) return; // already expired
+		Object msg = response.getResponse();
+		if (msg instanceof ExtractedLinksMsg)
+			extraction.outLinks = ((ExtractedLinksMsg) msg).getLinks();
+		else if (msg instanceof ExtractedDataMsg)
+			extraction.record = ((ExtractedDataMsg) msg).getRecord();
+		answered(extraction);
+	}
+	
+	/*
+	 * Completes the extractions the repository did not answer in time
+	 * with what has been extracted so far
+	 */
+	private void expire() {
+		for (Extraction extraction : requests.expire(System.currentTimeMillis())) {
+			log().warning("extract: TIMEOUT "+extraction.curl.getStringUrl());
+			answered(extraction);
+		}
+	}
+	
+	private void answered(Extraction extraction) {
+		extraction.waiting--;
+		if (extraction.waiting==0)
+			forward(new ResultMsg(extraction.curl, extraction.outLinks, extraction.record));
 	}
 	
 	private void forward(ResultMsg msg) {
@@ -103,7 +159,7 @@ public class CrawlExtractor extends AbstractLoggingActor {
 		for (String xPath : links.keySet()) {
 			for (String link : links.get(xPath)) {
 				PageClass dest = src.getDestinationByXPath(xPath);
-				copy.addOutLink(link, dest.getName());
+				if (dest.isRelevant()) copy.addOutLink(link, dest.getName());
 			}
 		}
 		
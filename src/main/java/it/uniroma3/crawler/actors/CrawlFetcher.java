@@ -1,35 +1,56 @@
 package it.uniroma3.crawler.actors;
 
 import static it.uniroma3.crawler.util.Commands.*;
-import static akka.pattern.PatternsCS.ask;
-import static akka.pattern.PatternsCS.pipe;
 
-import java.util.concurrent.CompletableFuture;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.TimeUnit;
 
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
 import akka.actor.ActorSelection;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.model.CrawlURL;
 import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.settings.Settings;
 import scala.concurrent.duration.Duration;
 
 public class CrawlFetcher extends AbstractLoggingActor {
+	private final static long TICK_MILLIS = 100;
+	final static long FETCH_TIMEOUT = 10000;
 	private final int id;
 	private final ActorRef cache;
+	private final Queue<CrawlURL> leased;
+	private final Queue<Long> due;
+	private final boolean pipeline;
+	private final PendingRequests<CrawlURL> requests; // fetches waiting for the repository
+	private final Cancellable ticker;
+	private ActorRef frontier; // the Frontier of the leased URLs
 	private int failures;
 	
 	static public class ResultMsg {
 		private final CrawlURL curl;
 		private final String url;
 		private final int responseCode;
+		private final Map<String, List<String>> outLinks;
+		private final List<String> record;
 		
 		public ResultMsg(CrawlURL curl, String url, int resp) {
+			this(curl, url, resp, null, null);
+		}
+		
+		public ResultMsg(CrawlURL curl, String url, int resp, 
+				Map<String, List<String>> links, List<String> record) {
 			this.curl = curl;
 			this.url = url;
 			this.responseCode = resp;
+			this.outLinks = links;
+			this.record = record;
 		}
 		
 		public CrawlURL getCurl() {
@@ -43,40 +64,114 @@ public class CrawlFetcher extends AbstractLoggingActor {
 		public int getResponseCode() {
 			return this.responseCode;
 		}
+		
+		public Map<String, List<String>> getLinks() {
+			return this.outLinks;
+		}
+		
+		public List<String> getRecord() {
+			return this.record;
+		}
 	}
 	
 	public CrawlFetcher() {
 		this.id = Integer.parseInt(self().path().name().replace("fetcher", ""));
 		String cacheName = "cache" + id;
 		this.cache = context().actorOf(Props.create(CrawlCache.class), cacheName);
+		this.leased = new LinkedList<>();
+		this.due = new LinkedList<>();
 		this.failures = 0;
+		this.pipeline = Settings.SettingsProvider.get(context().system()).pipeline;
+		this.requests = new PendingRequests<>(FETCH_TIMEOUT, TICK_MILLIS, System.currentTimeMillis());
+		this.ticker = context().system().scheduler().schedule(
+				Duration.create(TICK_MILLIS, TimeUnit.MILLISECONDS), 
+				Duration.create(TICK_MILLIS, TimeUnit.MILLISECONDS), 
+				self(), TICK, context().dispatcher(), self());
+	}
+	
+	@Override
+	public void postStop() throws Exception {
+		ticker.cancel();
+		super.postStop();
 	}
 	
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
 		.matchEquals(START, msg -> context().parent().tell(NEXT, self()))
+		.match(LeaseMsg.class, this::lease)
 		.match(CrawlURL.class, this::fetchRequest)
-		.match(ResultMsg.class, this::fetchHandle)
+		.match(ResponseMsg.class, this::fetchResponse)
+		.matchEquals(TICK, msg -> expire())
 		.build();
 	}
 	
+	private void lease(LeaseMsg msg) {
+		boolean idle = leased.isEmpty();
+		frontier = sender();
+		long now = System.currentTimeMillis();
+		for (int i=0; i<msg.getURLs().size(); i++) {
+			leased.add(msg.getURLs().get(i));
+			due.add(now+msg.getDelay(i));
+		}
+		if (idle) fetchNext();
+	}
+	
+	/*
+	 * Fetches the next leased URL as soon as its politeness delay is over,
+	 * or requests a new lease to the Frontier (or to the shared pool)
+	 */
+	private void fetchNext() {
+		if (leased.isEmpty()) {
+			context().parent().tell(NEXT, self());
+			return;
+		}
+		long wait = due.peek()-System.currentTimeMillis();
+		if (wait>0)
+			context().system().scheduler().scheduleOnce(
+					Duration.create(wait, TimeUnit.MILLISECONDS),
+					self(), leased.peek(), context().dispatcher(), self());
+		else self().tell(leased.peek(), self());
+	}
+	
 	private void fetchRequest(CrawlURL curl) {
 		String url = curl.getStringUrl();
 		PageClass pClass = curl.getPageClass();
 		boolean js = curl.getPageClass().useJavaScript();
 		ActorSelection repository = context().actorSelection(REPOSITORY);
 		
-		CompletableFuture<Object> future = 
-				ask(repository, 
-					new FetchMsg(url, pClass.getForm(), curl.getFormParameters(),
-							pClass.getName(), curl.getDomain(),id,js), 
-					10000).toCompletableFuture();
-		CompletableFuture<ResultMsg> result = future.thenApply(v -> {
-			FetchedMsg msg = (FetchedMsg) future.join();
-			return new ResultMsg(curl, msg.getUrl(), msg.getResponse());
-		});
-		pipe(result, context().dispatcher()).to(self());
+		FetchMsg fetch = new FetchMsg(url, pClass.getForm(), curl.getFormParameters(),
+				pClass.getName(), curl.getDomain(),id,js,pClass.useRawFetch(),pClass.saveAssets());
+		if (pipeline) {
+			// the page will be parsed once, right after download
+			ExtractLinksMsg links = (!pClass.isEndPage()) ?
+					new ExtractLinksMsg(url, pClass.getNavigationXPaths(), pClass.getFormXPaths()) :
+					new ExtractLinksMsg(url, new ArrayList<>());
+			ExtractDataMsg data = (pClass.isDataPage()) ? 
+					new ExtractDataMsg(url, pClass.xPathToData()) : null;
+			fetch = new FetchMsg(fetch, links, data);
+		}
+		
+		long request = requests.add(curl, System.currentTimeMillis());
+		repository.tell(new RequestMsg(request, url, fetch), self());
+	}
+	
+	private void fetchResponse(ResponseMsg response) {
+		CrawlURL curl = requests.complete(response.getId());
+		if (curl==null) return; // already expired
+		FetchedMsg msg = (FetchedMsg) response.getResponse();
+		fetchHandle(new ResultMsg(curl, msg.getUrl(), msg.getResponse(), 
+				msg.getLinks(), msg.getRecord()));
+	}
+	
+	/*
+	 * Handles the fetches the repository did not answer in time as failed
+	 */
+	private void expire() {
+		for (CrawlURL curl : requests.expire(System.currentTimeMillis())) {
+			log().warning("HTTP REQUEST: TIMEOUT "+curl.getStringUrl());
+			fetchHandle(new ResultMsg(curl, null, 1));
+		}
 	}
 	
 	private void fetchHandle(ResultMsg msg) {
@@ -92,10 +187,14 @@ public class CrawlFetcher extends AbstractLoggingActor {
 			else 
 				log().info("Page reached = "+url);
 			
-			// send cUrl to cache for further processing
-			cache.tell(curl, self());
-			// request next cUrl to Frontier
-			context().parent().tell(NEXT, self());
+			/* send cUrl to cache for further processing: 
+			 * a pipelined fetch not extracted goes through a save as well */
+			if (msg.getLinks()!=null)
+				cache.tell(new CrawlExtractor.ResultMsg(curl, msg.getLinks(), msg.getRecord()), self());
+			else
+				cache.tell(curl, self());
+			// fetch next leased cUrl
+			done();
 		}
 		else {
 			log().warning("HTTP REQUEST: FAILED "+url);
@@ -110,12 +209,21 @@ public class CrawlFetcher extends AbstractLoggingActor {
 				context().actorSelection(REPOSITORY)
 				.tell(new StopMsg(curl.getStringUrl()), self());
 				
+				// release the lease of the cUrl
+				frontier.tell(new OldURLMsg(curl), self());
+				
 				log().info("TRYING NEXT URL");
-				context().parent().tell(NEXT, self());
+				done();
 			}
 		}
 	}
 	
+	private void done() {
+		leased.poll();
+		due.poll();
+		fetchNext();
+	}
+	
 	private void waitAndRequestNext(int time) {
 		// wait time befor requesting
 		log().warning("HTTP REQUEST: WAIT FOR "+time+" minutes");
@@ -0,0 +1,104 @@
+package it.uniroma3.crawler.actors;
+
+import static it.uniroma3.crawler.util.Commands.*;
+
+import java.util.LinkedList;
+import java.util.Queue;
+
+import akka.actor.AbstractLoggingActor;
+import akka.actor.ActorRef;
+import akka.actor.Props;
+import akka.actor.Terminated;
+import it.uniroma3.crawler.actors.frontier.FairScheduler;
+import it.uniroma3.crawler.settings.CrawlerSettings;
+import it.uniroma3.crawler.settings.Settings;
+
+/**
+ * A CrawlFetcherPool owns the {@link CrawlFetcher}s shared by all the Frontiers.
+ * <br>
+ * A fetcher asking for the next lease is handed to one of the ready Frontiers, 
+ * chosen by weighted fair queueing: a Frontier with no URL to lease, or whose hosts 
+ * are not due, hands the fetcher back and is skipped until it tells it is ready again. 
+ * Idle fetchers thus flow to the websites with a backlog.
+ */
+public class CrawlFetcherPool extends AbstractLoggingActor {
+	private final FairScheduler<ActorRef> frontiers;
+	private final Queue<ActorRef> idleFetchers;
+	
+	static public class RegisterMsg {
+		private final ActorRef frontier;
+		private final int weight;
+		
+		public RegisterMsg(ActorRef frontier, int weight) {
+			this.frontier = frontier;
+			this.weight = weight;
+		}
+		
+		public ActorRef getFrontier() {
+			return this.frontier;
+		}
+		
+		public int getWeight() {
+			return this.weight;
+		}
+	}
+	
+	static public class UnavailableMsg {
+		private final ActorRef fetcher;
+		
+		public UnavailableMsg(ActorRef fetcher) {
+			this.fetcher = fetcher;
+		}
+		
+		public ActorRef getFetcher() {
+			return this.fetcher;
+		}
+	}
+	
+	public CrawlFetcherPool() {
+		CrawlerSettings set = Settings.SettingsProvider.get(context().system());
+		this.frontiers = new FairScheduler<>();
+		this.idleFetchers = new LinkedList<>();
+		for (int i=0;i<set.pool;i++)
+			context().watch(context().actorOf(Props.create(CrawlFetcher.class), "fetcher"+i));
+	}
+	
+	@Override
+	public Receive createReceive() {
+		return receiveBuilder()
+		.matchEquals(START, msg -> context().actorSelection("*").tell(msg, self()))
+		.matchEquals(NEXT, msg -> dispatch(sender()))
+		.match(RegisterMsg.class, this::register)
+		.match(UnavailableMsg.class, msg -> {
+			frontiers.refund(sender());
+			frontiers.setReady(sender(), false);
+			dispatch(msg.getFetcher());})
+		.matchEquals(READY, msg -> {
+			frontiers.setReady(sender(), true);
+			drain();})
+		.match(Terminated.class, msg -> frontiers.remove(msg.getActor()))
+		.build();
+	}
+	
+	private void register(RegisterMsg msg) {
+		context().watch(msg.getFrontier());
+		frontiers.add(msg.getFrontier(), msg.getWeight());
+		drain();
+	}
+	
+	/*
+	 * Hands the fetcher to the next Frontier, 
+	 * or keeps it idle until a Frontier is ready
+	 */
+	private void dispatch(ActorRef fetcher) {
+		ActorRef frontier = frontiers.next();
+		if (frontier!=null) frontier.tell(NEXT, fetcher);
+		else idleFetchers.add(fetcher);
+	}
+	
+	private void drain() {
+		while (!idleFetchers.isEmpty() && frontiers.hasReady())
+			dispatch(idleFetchers.poll());
+	}
+
+}
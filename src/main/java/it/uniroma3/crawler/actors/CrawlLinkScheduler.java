@@ -1,6 +1,7 @@
 package it.uniroma3.crawler.actors;
 
 import static it.uniroma3.crawler.util.Commands.REPOSITORY;
+import static it.uniroma3.crawler.util.Commands.FRONTIER;
 
 import akka.actor.AbstractActor;
 import akka.actor.ActorSelection;
@@ -8,6 +9,7 @@ import it.uniroma3.crawler.messages.StoreURLMsg;
 import it.uniroma3.crawler.messages.OldURLMsg;
 import it.uniroma3.crawler.messages.StopMsg;
 import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.util.FileUtils;
 
 public class CrawlLinkScheduler extends AbstractActor {
  	
@@ -19,7 +21,8 @@ public class CrawlLinkScheduler extends AbstractActor {
 	}
 	
 	private void handleCURLS(CrawlURL curl) {
-		ActorSelection frontier = context().actorSelection("../../../..");
+		ActorSelection frontier = 
+				context().actorSelection(FRONTIER+FileUtils.normalizeURL(curl.getDomain()));
 		ActorSelection repository = context().actorSelection(REPOSITORY);
 						
 		curl.getOutLinks().stream()
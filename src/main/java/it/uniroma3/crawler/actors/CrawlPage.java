@@ -5,19 +5,30 @@ import static it.uniroma3.crawler.util.XPathUtils.getAbsoluteInternalURLs;
 import static it.uniroma3.crawler.util.XPathUtils.getFormParameters;
 import static it.uniroma3.crawler.util.Commands.*;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 
 import static java.util.stream.Collectors.toList;
 
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import com.gargoylesoftware.htmlunit.HttpMethod;
 import com.gargoylesoftware.htmlunit.WebClient;
 import com.gargoylesoftware.htmlunit.WebRequest;
+import com.gargoylesoftware.htmlunit.WebResponse;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 import com.gargoylesoftware.htmlunit.util.NameValuePair;
 
@@ -25,156 +36,464 @@ import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.model.DataType;
+import it.uniroma3.crawler.util.AssetStore;
+import it.uniroma3.crawler.util.CompactDom;
 import it.uniroma3.crawler.util.FileUtils;
+import it.uniroma3.crawler.util.RawPage;
+import it.uniroma3.crawler.util.WarcReader;
+import it.uniroma3.crawler.util.WarcWriter;
+import it.uniroma3.crawler.util.WebClientPool;
+import it.uniroma3.crawler.util.XPathPlan;
 
+/**
+ * A CrawlPage is a worker that fetches, saves and extracts the pages
+ * of the URLs routed to it by the {@link CrawlRepository}.
+ * <br>
+ * The state of a page is kept from its fetch until its URL is stopped,
+ * for at most {@value #MAX_PAGES} pages: the least recently used ones are dropped first.
+ * A page fetched by HtmlUnit keeps its pooled web client until it is stored or dropped.
+ * The XPaths of a PageClass are compiled in an {@link XPathPlan} for its first page,
+ * and evaluated together for the following ones.
+ * Pages not built by JavaScript are parsed into a {@link CompactDom} when the plan
+ * and the data types allow it, without building the full DOM of HtmlUnit.
+ * <br>
+ * Pages are stored in the WARC segments of their website, 
+ * or each one in its own file if the max segment size is 0.
+ * In WARC segments, the pages of a class can be stored against the template
+ * learned from the first pages of the class.
+ */
 public class CrawlPage extends AbstractLoggingActor {
-	private String url;
-	private String pclass;
-	private String domain;
-	private HtmlPage html;
-	private String htmlPath;
+	/* well below the timeout of the fetcher: a slow page must not hold 
+	 * the requests queued behind it on this worker until they expire */
+	private final static int DOWNLOAD_TIMEOUT = (int) CrawlFetcher.FETCH_TIMEOUT/2;
+	private final static int MAX_PAGES = 256;
+	private final static int MAX_PLANS = 64;
+	private final Map<String, Page> pages; // by requested URL
+	private final Map<String, WarcWriter> warcs; // by website
+	private final Map<List<String>, XPathPlan> plans; // by XPaths
+	private final long segmentSize;
+	private final int templateSamples;
+
+	/*
+	 * The state of a page handled by this worker
+	 */
+	private static class Page {
+		private String url;
+		private final String pclass;
+		private final String domain;
+		private final boolean js;
+		private final boolean assets;
+		private HtmlPage html;
+		private WebClient client; // the owner of html, until the page is stored
+		private String host;
+		private RawPage raw;
+		private String htmlPath;
+		private Charset charset = StandardCharsets.ISO_8859_1;
+
+		Page(String url, String pclass, String domain, boolean js, boolean assets) {
+			this.url = url;
+			this.pclass = pclass;
+			this.domain = domain;
+			this.js = js;
+			this.assets = assets;
+		}
+	}
+
+	public CrawlPage(long segmentSize, int templateSamples) {
+		this.segmentSize = segmentSize;
+		this.templateSamples = templateSamples;
+		this.warcs = new HashMap<>();
+		this.pages = new LinkedHashMap<String, Page>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Page> eldest) {
+				boolean evict = size() > MAX_PAGES;
+				if (evict) releaseClient(eldest.getValue());
+				return evict;
+			}
+		};
+		this.plans = new LinkedHashMap<List<String>, XPathPlan>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<String>, XPathPlan> eldest) {
+				return size() > MAX_PLANS;
+			}
+		};
+	}
 	
+	@Override
+	public void postStop() throws Exception {
+		for (WarcWriter warc : warcs.values()) warc.close();
+		pages.values().forEach(CrawlPage::releaseClient);
+		super.postStop();
+	}
+
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
-		.match(FetchMsg.class, this::fetch)
-		.matchEquals(SAVE, msg -> save())
-		.match(ExtractLinksMsg.class, this::extract)
-		.match(ExtractDataMsg.class, this::extract)			
+		.match(RequestMsg.class, this::request)
+		.match(FetchMsg.class, msg -> fetch(msg, this::reply))
+		.match(SaveMsg.class, msg -> save(msg, this::reply))
+		.match(ExtractLinksMsg.class, msg -> extract(msg, this::reply))
+		.match(ExtractDataMsg.class, msg -> extract(msg, this::reply))
+		.match(StopMsg.class, msg -> releaseClient(pages.remove(msg.getUrl())))
 		.build();
 	}
 	
-	private void fetch(FetchMsg msg) {
-		setURL(msg.getUrl());
-		setClass(msg.getPageClass());
-		setDomain(msg.getDomain());
-
-		HtmlPage html = fetchUrl(url, msg.getForm(), msg.getParams(), msg.useJavaScript());
-		setHtml(html);
-		int code = (html!=null) ? 0 : 1;
-		FetchedMsg response = (!msg.getUrl().equals(url)) ? new FetchedMsg(url, code) : new FetchedMsg(code);
-		sender().tell(response, self());
+	/*
+	 * Handles a request, answering with a ResponseMsg of the same id
+	 */
+	private void request(RequestMsg msg) {
+		Object request = msg.getRequest();
+		Consumer<Object> reply = response -> reply(new ResponseMsg(msg.getId(), response));
+		if (request instanceof FetchMsg) 
+			fetch((FetchMsg) request, reply);
+		else if (request instanceof SaveMsg) 
+			save((SaveMsg) request, reply);
+		else if (request instanceof ExtractLinksMsg) 
+			extract((ExtractLinksMsg) request, reply);
+		else if (request instanceof ExtractDataMsg) 
+			extract((ExtractDataMsg) request, reply);
+		else 
+			unhandled(msg);
 	}
 	
-	private void save() {
-		String directory = FileUtils.getPagesDirectory(domain);
-		String path = savePage(html, directory, true);
-		if (!path.isEmpty()) {
-			setHtmlPath(path);
-			sender().tell(SAVED, self());
-			context().parent().tell(new SaveCacheMsg(domain,url,pclass,path), 
-				ActorRef.noSender());
+	private void reply(Object response) {
+		sender().tell(response, self());
+	}
+
+	private void fetch(FetchMsg msg, Consumer<Object> reply) {
+		Page page = new Page(msg.getUrl(), msg.getPageClass(), msg.getDomain(), 
+				msg.useJavaScript(), msg.saveAssets());
+		releaseClient(pages.put(msg.getUrl(), page));
+
+		int code;
+		if (msg.useRawFetch()) {
+			page.raw = fetchRaw(page.url);
+			code = (page.raw!=null) ? 0 : 1;
+		}
+		else {
+			page.html = fetchUrl(page, msg.getForm(), msg.getParams(), msg.useJavaScript());
+			code = (page.html!=null) ? 0 : 1;
 		}
+		String newUrl = (!msg.getUrl().equals(page.url)) ? page.url : null;
+		if (code==0 && msg.isPipelined()) {
+			/* extract from the page in memory, then persist it before
+			 * answering: extracted links are followed only for stored pages */
+			FetchedMsg response = extract(page, msg, newUrl);
+			if (store(page).isEmpty()) {
+				log().warning("fetch: IOException while saving page: "+page.url);
+				/* not extracted: the cache asks to save the page, 
+				 * and releases the URL when the save fails */
+				response = new FetchedMsg(newUrl, 0);
+			}
+			reply.accept(response);
+		}
+		else {
+			FetchedMsg response = (newUrl!=null) ? new FetchedMsg(newUrl, code) : new FetchedMsg(code);
+			reply.accept(response);
+		}
+	}
+
+	private void save(SaveMsg msg, Consumer<Object> reply) {
+		Page page = pages.get(msg.getUrl());
+		// a pipelined fetch stores the page already
+		if (page!=null && (page.htmlPath!=null || !store(page).isEmpty()))
+			reply.accept(SAVED);
 		else {
 			//TODO: improve exception handling
-			sender().tell(ERROR, self());
-			log().warning("save: IOException while saving page: "+url);
+			reply.accept(ERROR);
+			log().warning("save: IOException while saving page: "+msg.getUrl());
+		}
+	}
+
+	/*
+	 * Saves the downloaded page, releasing it from memory
+	 * Returns the saved file path, or an empty string if the page cannot be saved
+	 */
+	private String store(Page page) {
+		if (page.html==null && page.raw==null) return "";
+		if (page.html!=null && page.assets)
+			AssetStore.getInstance().saveImages(page.html);
+		String path;
+		if (segmentSize>0) 
+			path = storeWarc(page);
+		else {
+			String directory = FileUtils.getPagesDirectory(page.domain);
+			path = (page.raw!=null) ?
+					saveRawPage(page.raw, directory) : savePage(page.html, directory, false);
+			// images are kept in the asset store, the page is saved as UTF-8 XML
+			page.charset = (page.raw!=null) ? page.raw.getCharset() : StandardCharsets.UTF_8;
+		}
+		if (!path.isEmpty()) {
+			page.htmlPath = path;
+			context().parent().tell(new SaveCacheMsg(page.domain,page.url,page.pclass,path),
+				ActorRef.noSender());
+		}
+		page.html = null;
+		page.raw = null;
+		releaseClient(page);
+		return path;
+	}
+
+	/*
+	 * Appends the downloaded page to the WARC segments of its website:
+	 * the response as it is, or the document built by JavaScript
+	 * Returns the location of the record, or an empty string if the page cannot be stored
+	 */
+	private String storeWarc(Page page) {
+		try {
+			WarcWriter warc = warcs.get(page.domain);
+			if (warc==null) {
+				warc = new WarcWriter(FileUtils.getWarcDirectory(page.domain), 
+						self().path().name(), segmentSize, templateSamples);
+				warcs.put(page.domain, warc);
+			}
+			if (page.raw!=null) 
+				return warc.append(page.url, page.pclass, 
+						page.raw.getContent(), page.raw.getCharset());
+			else if (page.js)
+				return warc.append(page.url, page.pclass, 
+						page.html.asXml().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+			else {
+				WebResponse response = page.html.getWebResponse();
+				Charset charset = response.getContentCharset();
+				try (InputStream in = response.getContentAsStream()) {
+					return warc.append(page.url, page.pclass, readAll(in), 
+							(charset!=null) ? charset : StandardCharsets.ISO_8859_1);
+				}
+			}
+		} catch (IOException e) {
+			return "";
 		}
-		setHtml(null);
 	}
 	
-	private void extract(ExtractLinksMsg msg) {
+	private byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8*1024];
+		int n;
+		while ((n = in.read(buffer))>0)
+			out.write(buffer, 0, n);
+		return out.toByteArray();
+	}
+	
+	/*
+	 * Reads back the source of a saved page, without parsing it
+	 */
+	private RawPage restore(Page page) throws IOException {
+		if (segmentSize>0) return WarcReader.read(page.htmlPath);
+		byte[] content = Files.readAllBytes(Paths.get(page.htmlPath.replaceFirst("^/(.:/)", "$1")));
+		return new RawPage(new URL(page.url), content, page.charset);
+	}
+
+	/*
+	 * Extracts links and data from the page in memory.
+	 * If the page cannot be parsed or an XPath cannot be evaluated, the response
+	 * is not marked as extracted: the fetcher then hands the URL to the cache, 
+	 * whose save of the already stored page succeeds, and the extraction 
+	 * is requested from the stored page, as without pipelining.
+	 */
+	private FetchedMsg extract(Page page, FetchMsg msg, String newUrl) {
+		ExtractLinksMsg links = msg.getLinksRequest();
+		ExtractDataMsg data = msg.getDataRequest();
+		Map<String, List<String>> outLinks = new HashMap<>();
+		List<String> record = new ArrayList<>();
+		List<String> navXPaths = (links!=null) ? links.getNavXPaths() : Collections.emptyList();
+		List<String> formXPaths = (links!=null) ? links.getFormXPaths() : Collections.emptyList();
+		Map<String, DataType> dataTypes = (data!=null) ? data.getData() : Collections.emptyMap();
+		try {
+			if (page.raw!=null)
+				extract(page, page.raw, navXPaths, formXPaths, dataTypes, outLinks, record);
+			else
+				extract(page, page.html, navXPaths, formXPaths, dataTypes, outLinks, record);
+		} catch (IOException | RuntimeException e) {
+			log().warning("extract: cannot extract from fetched page: "+page.url+" "+e);
+			return new FetchedMsg(newUrl, 0);
+		}
+		return new FetchedMsg(newUrl, 0, outLinks, record);
+	}
+
+	private void extract(ExtractLinksMsg msg, Consumer<Object> reply) {
 		try {
-			HtmlPage html = restorePageFromFile(htmlPath, domain);
-			Map<String, List<String>> outLinks = getOutLinks(html, domain, msg.getNavXPaths(),
-					msg.getFormXPaths());
-			sender().tell(new ExtractedLinksMsg(outLinks), self());
+			Page page = saved(msg.getUrl());
+			Map<String, List<String>> outLinks = new HashMap<>();
+			extract(page, restore(page), msg.getNavXPaths(), msg.getFormXPaths(), 
+					Collections.emptyMap(), outLinks, new ArrayList<>());
+			reply.accept(new ExtractedLinksMsg(outLinks));
 		} catch (Exception e) {
 			//TODO: improve exception handling
-			sender().tell(new ExtractedLinksMsg(), self());
-			log().warning("extract: Exception while restoring HtmlPage: "+htmlPath+" "+e.getMessage());
-			e.printStackTrace();
+			reply.accept(new ExtractedLinksMsg());
+			log().warning("extract: Exception while restoring HtmlPage: "+msg.getUrl()+" "+e.getMessage());
 		}
 	}
-	
-	private void extract(ExtractDataMsg msg) {
+
+	private void extract(ExtractDataMsg msg, Consumer<Object> reply) {
 		try {
-			HtmlPage html = restorePageFromFile(htmlPath, domain);
-			List<String> record = getDataRecord(html, msg.getData());
-			sender().tell(new ExtractedDataMsg(record), self());
+			Page page = saved(msg.getUrl());
+			List<String> record = new ArrayList<>();
+			extract(page, restore(page), Collections.emptyList(), Collections.emptyList(), 
+					msg.getData(), new HashMap<>(), record);
+			reply.accept(new ExtractedDataMsg(record));
 		} catch (Exception e) {
 			//TODO: improve exception handling
-			sender().tell(new ExtractedDataMsg(), self());
+			reply.accept(new ExtractedDataMsg());
 			log().warning("extract: Exception while restoring HtmlPage: "+e.getMessage());
 		}
 	}
-	
-	private void setHtml(HtmlPage html) {
-		this.html = html;
-	}
-	
-	private void setHtmlPath(String htmlPath) {
-		this.htmlPath = htmlPath;
-	}
-	
-	private void setDomain(String domain) {
-		this.domain = domain;
+
+	/*
+	 * Extracts the out links and the data record from the source of a page:
+	 * over a CompactDom if the XPaths and the data types allow it, 
+	 * or else over the HtmlPage parsed by HtmlUnit
+	 */
+	private void extract(Page page, RawPage raw, List<String> navXPaths, List<String> formXPaths,
+			Map<String, DataType> dataTypes, Map<String, List<String>> outLinks, 
+			List<String> record) throws IOException {
+		XPathPlan plan = getPlan(navXPaths, dataTypes);
+		if (plan.isCompact() && formXPaths.isEmpty()) {
+			CompactDom dom = CompactDom.parse(new String(raw.getContent(), raw.getCharset()));
+			Map<String, int[]> matches = plan.evaluate(dom);
+			List<String> values = getDataRecord(dom, dataTypes, matches);
+			if (values!=null) {
+				for (String xp : navXPaths)
+					outLinks.put(xp, getAbsoluteInternalURLs(dom, matches.get(xp), page.domain));
+				record.addAll(values);
+				return;
+			}
+		}
+		extract(page, parsePage(raw), navXPaths, formXPaths, dataTypes, outLinks, record);
 	}
-	
-	private void setURL(String url) {
-		this.url = url;
+
+	private void extract(Page page, HtmlPage html, List<String> navXPaths, List<String> formXPaths,
+			Map<String, DataType> dataTypes, Map<String, List<String>> outLinks, 
+			List<String> record) throws IOException {
+		Map<String, List<Object>> matches = getPlan(navXPaths, dataTypes).evaluate(html);
+		outLinks.putAll(getOutLinks(html, page, navXPaths, formXPaths, matches));
+		record.addAll(getDataRecord(dataTypes, matches));
 	}
-	
-	private void setClass(String pclass) {
-		this.pclass = pclass;
+
+	private Page saved(String url) throws IOException {
+		Page page = pages.get(url);
+		if (page==null || page.htmlPath==null)
+			throw new IOException("no saved page for "+url);
+		return page;
 	}
-	 
-	private HtmlPage fetchUrl(String url, String form, List<NameValuePair> params, boolean js) {
-		WebClient client = makeWebClient(js);
+
+	private HtmlPage fetchUrl(Page p, String form, List<NameValuePair> params, boolean js) {
+		WebClientPool pool = WebClientPool.getInstance();
+		WebClient client = null;
 		HtmlPage page;
 		try {
+			String host = new URL(p.url).getHost();
+			client = pool.borrow(host, js);
+			client.getOptions().setTimeout(DOWNLOAD_TIMEOUT);
 			if (form!=null) {
-				HtmlPage formPage = getPage(url, client);
-				WebRequest request = new WebRequest(new URL(url), HttpMethod.POST);
+				HtmlPage formPage = getPage(p.url, client);
+				WebRequest request = new WebRequest(new URL(p.url), HttpMethod.POST);
 				request.setRequestParameters(getFormParameters(formPage, form));
-				
+
 				page = getPage(request, client);
 				//getPage(request, client);
 				//page = getPage(url, client);
 			}
 			else if (!params.isEmpty()) {
-				WebRequest request = new WebRequest(new URL(url), HttpMethod.POST);
+				WebRequest request = new WebRequest(new URL(p.url), HttpMethod.POST);
 				request.setRequestParameters(params);
-				
+
 				page = getPage(request, client);
 				// URL will change! (hopefully...)
-				setURL(page.getUrl().toString());
+				p.url = page.getUrl().toString();
 			}
 			else
-				page = getPage(url, client);
+				page = getPage(p.url, client);
+			/* the page is still in use until it is stored:
+			 * the client goes back to the pool only then */
+			p.client = client;
+			p.host = host;
 		} catch (Exception e) {
 			page = null;
-		} finally {
-			client.close();
+			if (client!=null) client.close();
 		}
 		return page;
 	}
-	
-	private Map<String, List<String>> getOutLinks(HtmlPage html, String base, 
-			List<String> xPaths, List<String> formXPaths) throws IOException {
+
+	/*
+	 * Gives back to the pool the web client of a page that is stored or dropped
+	 */
+	private static void releaseClient(Page page) {
+		if (page==null || page.client==null) return;
+		WebClientPool.getInstance().release(page.host, page.js, page.client);
+		page.client = null;
+		page.html = null;
+	}
+
+	private RawPage fetchRaw(String url) {
+		try {
+			return RawPage.fetch(url, DOWNLOAD_TIMEOUT);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * Returns the plan to evaluate the navigation and data XPaths in a single pass 
+	 * over the page, compiled for the same XPaths of a previous page
+	 */
+	private XPathPlan getPlan(List<String> navXPaths, Map<String, DataType> dataTypes) {
+		List<String> xpaths = new ArrayList<>(navXPaths);
+		dataTypes.keySet().forEach(xp -> xpaths.add(xp.split("\t")[1]));
+		XPathPlan plan = plans.get(xpaths);
+		if (plan==null) {
+			plan = new XPathPlan(xpaths);
+			plans.put(xpaths, plan);
+		}
+		return plan;
+	}
+
+	private Map<String, List<String>> getOutLinks(HtmlPage html, Page page,
+			List<String> xPaths, List<String> formXPaths, 
+			Map<String, List<Object>> matches) throws IOException {
 		Map<String, List<String>> xpath2urls = new HashMap<>();
 		for (String xp : xPaths) {
-			xpath2urls.put(xp, getAbsoluteInternalURLs(html,xp,base));
+			xpath2urls.put(xp, getAbsoluteInternalURLs(matches.get(xp),page.domain));
 		}
 		for (String xp : formXPaths) {
 			/* Save form Name/Value pairs for a future POST request
 			 * as: "http://website.com/page>search=value;param=value2;..." */
-			StringBuilder postRequest = new StringBuilder(url+">");
+			StringBuilder postRequest = new StringBuilder(page.url+">");
 			List<NameValuePair> formParams = getFormParameters(html, xp);
 			for (NameValuePair param : formParams) {
 				postRequest.append(param.getName()+"="+param.getValue()+";");
 			}
 			xpath2urls.put(xp, Arrays.asList(postRequest.toString()));
 		}
-		
+
 		return xpath2urls;
 	}
-	
-	private List<String> getDataRecord(HtmlPage html, Map<String, DataType> dataTypes) {
+
+	private List<String> getDataRecord(Map<String, DataType> dataTypes, 
+			Map<String, List<Object>> matches) {
 		List<String> record = dataTypes.keySet().stream()
-				.map(xp -> dataTypes.get(xp).extract(html, xp.split("\t")[1]))
+				.map(xp -> dataTypes.get(xp).extract(matches.get(xp.split("\t")[1])))
 				.collect(toList());
 		return record;
 	}
-	
+
+	/*
+	 * Returns the data record extracted from a CompactDom,
+	 * or null if some data type needs the HtmlPage
+	 */
+	private List<String> getDataRecord(CompactDom dom, Map<String, DataType> dataTypes, 
+			Map<String, int[]> matches) {
+		List<String> record = new ArrayList<>();
+		for (String xp : dataTypes.keySet()) {
+			String value = dataTypes.get(xp).extract(dom, matches.get(xp.split("\t")[1]));
+			if (value==null) return null;
+			record.add(value);
+		}
+		return record;
+	}
+
 }
@@ -6,68 +6,72 @@ import akka.actor.Address;
 import akka.actor.AddressFromURIString;
 import akka.actor.Deploy;
 import akka.actor.Props;
+import akka.actor.Terminated;
 import akka.remote.RemoteScope;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.settings.AddressSettings;
-import it.uniroma3.crawler.util.FileUtils;
-
-import static it.uniroma3.crawler.util.Commands.SAVE;
-
-import scala.Option;
+import it.uniroma3.crawler.settings.NodesSettings;
 
+/**
+ * The CrawlRepository deploys a fixed pool of {@link CrawlPage} workers on each
+ * repository node, and routes the messages about a URL to a worker chosen
+ * by consistent hashing of the URL, so that every message about
+ * the same URL reaches the same worker.
+ * <br>
+ * The workers block on downloads and disk, hence they run on the dedicated
+ * {@value #DISPATCHER} of the node instead of the default dispatcher.
+ */
 public class CrawlRepository extends AbstractActor {
+	private final static int REPLICAS = 64;
+	private final static String DISPATCHER = "page-dispatcher";
 	private final ActorRef csvCache;
-	private final String[] nodes;
-	
+	private final ConsistentHash<ActorRef> workers;
+
 	public CrawlRepository() {
 		this.csvCache = context().actorOf(Props.create(CrawlUrlClass.class), "csvcache");
 		context().watch(csvCache);
-		this.nodes = AddressSettings.SettingsProvider.get(context().system()).nodes;
+		this.workers = new ConsistentHash<>(REPLICAS);
+		NodesSettings set = AddressSettings.SettingsProvider.get(context().system());
+		for (int n=0; n<set.nodes.length; n++)
+			for (int w=0; w<set.workers[n]; w++)
+				createWorker(set.nodes[n], set.segments[n], set.templates[n], "worker"+n+"_"+w);
 	}
-	
+
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
-		.match(FetchMsg.class, msg -> 
-			findOrCreate(msg.getUrl(), msg.getId()).forward(msg, context()))
-		.match(SaveMsg.class, msg -> 
-			find(msg.getUrl()).tell(SAVE, sender()))
-		.match(ExtractLinksMsg.class, msg -> 
-			find(msg.getUrl()).forward(msg, context()))
-		.match(ExtractDataMsg.class, msg -> 
-			find(msg.getUrl()).forward(msg, context()))
-		.match(SaveCacheMsg.class, 
+		.match(RequestMsg.class, msg ->
+			route(msg.getUrl()).forward(msg, context()))
+		.match(FetchMsg.class, msg ->
+			route(msg.getUrl()).forward(msg, context()))
+		.match(SaveMsg.class, msg ->
+			route(msg.getUrl()).forward(msg, context()))
+		.match(ExtractLinksMsg.class, msg ->
+			route(msg.getUrl()).forward(msg, context()))
+		.match(ExtractDataMsg.class, msg ->
+			route(msg.getUrl()).forward(msg, context()))
+		.match(StopMsg.class, msg ->
+			route(msg.getUrl()).forward(msg, context()))
+		.match(SaveCacheMsg.class,
 			msg -> csvCache.forward(msg, context()))
-		.match(StopMsg.class, this::stopChildPage)
+		.match(Terminated.class, msg ->
+			workers.remove(msg.getActor().path().name()))
 		.build();
 	}
-	
-	private void stopChildPage(StopMsg msg) {
-		ActorRef child = find(msg.getUrl());
-		context().unwatch(child);
-		context().stop(child);
-	}
-	
-	private ActorRef findOrCreate(String url, int id) {
-		ActorRef child = find(url);
-		if (child==null) child = create(url, id);
-		return child;
-	}
-	
-	private ActorRef find(String url) {
-		String name = FileUtils.normalizeURL(url);
-		Option<ActorRef> option = context().child(name);
-		ActorRef ref = (option.isEmpty()) ? null : option.get();
-		return ref;
+
+	private ActorRef route(String url) {
+		ActorRef worker = workers.get(url);
+		return (worker!=null) ? worker : context().system().deadLetters();
 	}
-	
-	private ActorRef create(String url, int id) {	
-		String name = FileUtils.normalizeURL(url);
-		Address addr = AddressFromURIString.parse(nodes[id]);
-		Props props = Props.create(CrawlPage.class).withDeploy(new Deploy(new RemoteScope(addr)));
-		ActorRef child = context().actorOf(props, name);		
-		context().watch(child);
-		return child;
+
+	private void createWorker(String node, long segment, int template, String name) {
+		Address addr = AddressFromURIString.parse(node);
+		Props props = Props.create(CrawlPage.class, segment, template)
+				.withDispatcher(DISPATCHER)
+				.withDeploy(new Deploy(new RemoteScope(addr)));
+		ActorRef worker = context().actorOf(props, name);
+		context().watch(worker);
+		workers.add(name, worker);
 	}
-	
+
 }
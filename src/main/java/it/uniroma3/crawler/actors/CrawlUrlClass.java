@@ -1,33 +1,78 @@
 package it.uniroma3.crawler.actors;
 
-import java.io.FileWriter;
-import java.io.IOException;
+import static it.uniroma3.crawler.util.Commands.TICK;
 
-import com.csvreader.CsvWriter;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import akka.actor.AbstractLoggingActor;
+import akka.actor.Cancellable;
 import it.uniroma3.crawler.messages.*;
 import it.uniroma3.crawler.util.FileUtils;
+import it.uniroma3.crawler.util.PageIndex;
+import scala.concurrent.duration.Duration;
 
+/**
+ * CrawlUrlClass keeps the URL - PageClass - file index of the saved pages
+ * of each website, in a {@link PageIndex} written in batches of at most
+ * {@value #BATCH} pages, or every {@value #FLUSH_MILLIS} milliseconds.
+ */
 public class CrawlUrlClass extends AbstractLoggingActor {
 	private final static String DIRECTORY = "src/main/resources/repository/";
+	private final static int BATCH = 1000;
+	private final static long FLUSH_MILLIS = 1000;
+	private final Map<String, PageIndex> indexes; // by website
+	private final Cancellable ticker;
+
+	public CrawlUrlClass() {
+		this.indexes = new HashMap<>();
+		this.ticker = context().system().scheduler().schedule(
+				Duration.create(FLUSH_MILLIS, TimeUnit.MILLISECONDS),
+				Duration.create(FLUSH_MILLIS, TimeUnit.MILLISECONDS),
+				self(), TICK, context().dispatcher(), self());
+	}
+
+	@Override
+	public void postStop() throws Exception {
+		ticker.cancel();
+		for (PageIndex index : indexes.values()) {
+			try {
+				index.close();
+			} catch (IOException e) {
+				log().warning("Could not write URL-PAGECLASS-FILEPATH Cache");
+			}
+		}
+		super.postStop();
+	}
 
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
 		.match(SaveCacheMsg.class, this::writeCache)
+		.matchEquals(TICK, msg -> indexes.values().forEach(this::flush))
 		.build();
 	}
-	
+
 	private void writeCache(SaveCacheMsg msg) {
+		PageIndex index = indexes.get(msg.getDomain());
+		if (index==null) {
+			try {
+				index = new PageIndex(DIRECTORY+FileUtils.normalizeURL(msg.getDomain()));
+				indexes.put(msg.getDomain(), index);
+			} catch (IOException e) {
+				log().warning("Could not open URL-PAGECLASS-FILEPATH Cache");
+				return;
+			}
+		}
+		index.put(msg.getUrl(), msg.getPageClass(), msg.getFilePath());
+		if (index.pending()>=BATCH) flush(index);
+	}
+
+	private void flush(PageIndex index) {
 		try {
-			String csv = DIRECTORY+FileUtils.normalizeURL(msg.getDomain())+".csv";
-			CsvWriter writer = new CsvWriter(new FileWriter(csv, true), '\t');
-			writer.write(msg.getUrl());
-			writer.write(msg.getPageClass());
-			writer.write(msg.getFilePath());
-			writer.endRecord();
-			writer.flush();
+			index.flush();
 		} catch (IOException e) {
 			log().warning("Could not write URL-PAGECLASS-FILEPATH Cache");
 		}
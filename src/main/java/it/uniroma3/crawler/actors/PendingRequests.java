@@ -0,0 +1,83 @@
+package it.uniroma3.crawler.actors;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.uniroma3.crawler.actors.frontier.TimingWheel;
+
+/**
+ * PendingRequests keeps track of the requests an actor is waiting a response for,
+ * by a request id to be sent along with the request and echoed back in the response.
+ * <br>
+ * Each request expires after a fixed timeout: the deadlines are kept in a
+ * {@link TimingWheel} visited by the periodic tick of the owning actor,
+ * so that no timer nor temporary actor is needed for each request.
+ * @param <T> the type of the context of a request
+ */
+class PendingRequests<T> {
+	private final static int WHEEL_SIZE = 512;
+	private final Map<Long, T> pending;
+	private final TimingWheel<Long> deadlines;
+	private final long timeout;
+	private long nextId;
+
+	/**
+	 * Constructs a new empty PendingRequests.
+	 * @param timeout the timeout of a request in milliseconds
+	 * @param tick the duration of a tick of the owning actor in milliseconds
+	 * @param now the current time in milliseconds
+	 */
+	PendingRequests(long timeout, long tick, long now) {
+		this.pending = new HashMap<>();
+		this.deadlines = new TimingWheel<>(tick, WHEEL_SIZE, now);
+		this.timeout = timeout;
+		this.nextId = 1;
+	}
+
+	/**
+	 * Registers a new request with the given context
+	 * @param context the context of the request, i.e. a CrawlURL
+	 * @param now the current time in milliseconds
+	 * @return the request id
+	 */
+	long add(T context, long now) {
+		long id = nextId++;
+		pending.put(id, context);
+		deadlines.schedule(now+timeout, id);
+		return id;
+	}
+
+	/**
+	 * Completes the request with the given id
+	 * @param id the request id
+	 * @return the context of the request, or null if the request
+	 * is unknown, already completed or expired
+	 */
+	T complete(long id) {
+		return pending.remove(id);
+	}
+
+	/**
+	 * Expires the requests whose timeout is over
+	 * @param now the current time in milliseconds
+	 * @return the contexts of the expired requests, in deadline order
+	 */
+	List<T> expire(long now) {
+		List<T> expired = new ArrayList<>();
+		for (long id : deadlines.advance(now)) {
+			T context = pending.remove(id);
+			if (context!=null) expired.add(context);
+		}
+		return expired;
+	}
+
+	/**
+	 * @return the number of pending requests
+	 */
+	int size() {
+		return pending.size();
+	}
+
+}
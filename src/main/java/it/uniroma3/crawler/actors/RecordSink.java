@@ -0,0 +1,142 @@
+package it.uniroma3.crawler.actors;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A RecordSink appends the tab separated records of a PageClass to its output file
+ * through a buffer kept open between records, so that a record costs a copy in memory
+ * and the file is written only when the buffer is full or flushed.
+ * <br>
+ * Files are named <code>name.csv</code>, or <code>name.csv.gz</code> if compressed:
+ * once a file holds more than the roll size, a new part <code>name-N.csv</code> is started.
+ * The size of a part is the number of bytes written to the file, compressed or not,
+ * so that a reopened sink resumes it from the length of the file: as buffered records
+ * count only once written, a part can exceed the roll size by up to a buffer.
+ * Each new file starts with the header of the records.
+ * A reopened sink appends to the last part found on disk.
+ */
+class RecordSink implements Closeable {
+	private final File directory;
+	private final String name;
+	private final String[] header;
+	private final int bufferSize;
+	private final boolean gzip;
+	private final long rollSize;
+	private Writer out;
+	private CountingOutputStream counter; // bytes of the current part
+	private int part;
+	private boolean dirty;
+
+	/**
+	 * Constructs a new RecordSink, opening its output file.
+	 * @param directory the directory of the output files
+	 * @param name the name of the output files
+	 * @param header the field names, written at the start of each file
+	 * @param bufferSize the size of the buffer in chars
+	 * @param gzip true to compress the output files
+	 * @param rollSize the size in bytes on disk after which a new part is started, 0 to never roll
+	 * @throws IOException if the output file cannot be opened
+	 */
+	RecordSink(File directory, String name, String[] header,
+			int bufferSize, boolean gzip, long rollSize) throws IOException {
+		this.directory = directory;
+		this.name = name;
+		this.header = header;
+		this.bufferSize = bufferSize;
+		this.gzip = gzip;
+		this.rollSize = rollSize;
+		while (file(part+1).exists()) part++;
+		if (rollSize>0 && file(part).length()>=rollSize) part++; // the last part is full
+		open();
+	}
+
+	/**
+	 * Appends the given record, as a line of tab separated fields.
+	 * @param record the fields of the record
+	 * @throws IOException if the buffer cannot be written
+	 */
+	void write(String[] record) throws IOException {
+		if (rollSize>0 && counter.count>=rollSize) {
+			out.close();
+			part++;
+			open();
+		}
+		writeLine(record);
+	}
+
+	/**
+	 * Writes the buffered records to the output file, if any.
+	 * @throws IOException if the output file cannot be written
+	 */
+	void flush() throws IOException {
+		if (dirty) {
+			out.flush();
+			dirty = false;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	File file(int n) {
+		String suffix = (gzip) ? ".csv.gz" : ".csv";
+		return new File(directory, (n==0) ? name+suffix : name+"-"+n+suffix);
+	}
+
+	private void open() throws IOException {
+		File file = file(part);
+		boolean exists = file.exists();
+		counter = new CountingOutputStream(new FileOutputStream(file, true), 
+				(exists) ? file.length() : 0);
+		OutputStream stream = counter;
+		if (gzip) stream = new GZIPOutputStream(stream, bufferSize, true); // a new member
+		out = new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), bufferSize);
+		if (!exists && header!=null) writeLine(header);
+	}
+
+	private void writeLine(String[] fields) throws IOException {
+		for (int i=0; i<fields.length; i++) {
+			if (i>0) out.write('\t');
+			out.write(fields[i]);
+		}
+		out.write('\n');
+		dirty = true;
+	}
+
+	/*
+	 * Counts the bytes that reach the output file
+	 */
+	private static class CountingOutputStream extends FilterOutputStream {
+		private long count;
+
+		CountingOutputStream(OutputStream out, long count) {
+			super(out);
+			this.count = count;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			count += len;
+		}
+	}
+
+}
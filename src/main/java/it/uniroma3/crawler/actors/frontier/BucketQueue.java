@@ -0,0 +1,189 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.util.function.ObjIntConsumer;
+
+/**
+ * A BucketQueue is a queue keyed by a small non-negative integer priority, 
+ * where a lower value means a higher priority. 
+ * <br>
+ * Each priority has its own bucket, a ring buffer that grows by doubling: elements 
+ * of the same priority are handed out in insertion order. Insertions and removals 
+ * at both ends take constant time, plus a scan over the empty buckets when 
+ * the first or the last one runs out.
+ * @param <E> the type of the elements
+ */
+class BucketQueue<E> {
+	private final static int INITIAL_CAPACITY = 16;
+	
+	private Object[][] buckets;
+	private int[] heads, sizes;
+	private int size;
+	private int best, worst; // first and last non-empty buckets
+	
+	/**
+	 * Constructs a new empty BucketQueue.
+	 */
+	BucketQueue() {
+		this.buckets = new Object[0][];
+		this.heads = new int[0];
+		this.sizes = new int[0];
+		reset();
+	}
+
+	/**
+	 * Adds the given element with the given priority
+	 * @param p the priority, 0 being the highest
+	 * @param e the element
+	 */
+	void add(int p, E e) {
+		if (p>=buckets.length) 
+			expand(p+1);
+		Object[] bucket = buckets[p];
+		if (bucket==null)
+			bucket = buckets[p] = new Object[INITIAL_CAPACITY];
+		else if (sizes[p]==bucket.length)
+			bucket = grow(p);
+		bucket[(heads[p]+sizes[p]) & (bucket.length-1)] = e;
+		sizes[p]++;
+		size++;
+		best = Math.min(best, p);
+		worst = Math.max(worst, p);
+	}
+
+	/**
+	 * @return the first element of the top-priority bucket, or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	E first() {
+		return (size>0) ? (E) buckets[best][heads[best]] : null;
+	}
+
+	/**
+	 * Retrieves and removes the first element of the top-priority bucket
+	 * @return the element, or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	E pollFirst() {
+		if (size==0) return null;
+		Object[] bucket = buckets[best];
+		E e = (E) bucket[heads[best]];
+		bucket[heads[best]] = null;
+		heads[best] = (heads[best]+1) & (bucket.length-1);
+		sizes[best]--;
+		removed();
+		return e;
+	}
+
+	/**
+	 * @return the last element of the lowest-priority bucket, or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	E last() {
+		if (size==0) return null;
+		Object[] bucket = buckets[worst];
+		return (E) bucket[(heads[worst]+sizes[worst]-1) & (bucket.length-1)];
+	}
+
+	/**
+	 * Retrieves and removes the last element of the lowest-priority bucket
+	 * @return the element, or null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	E pollLast() {
+		if (size==0) return null;
+		Object[] bucket = buckets[worst];
+		int tail = (heads[worst]+sizes[worst]-1) & (bucket.length-1);
+		E e = (E) bucket[tail];
+		bucket[tail] = null;
+		sizes[worst]--;
+		removed();
+		return e;
+	}
+
+	/**
+	 * @return the priority of the first element, meaningless if the queue is empty
+	 */
+	int firstPriority() {
+		return best;
+	}
+	
+	/**
+	 * @return the priority of the last element, meaningless if the queue is empty
+	 */
+	int lastPriority() {
+		return worst;
+	}
+
+	int size() {
+		return size;
+	}
+	
+	boolean isEmpty() {
+		return size==0;
+	}
+
+	void clear() {
+		for (int p=0; p<buckets.length; p++) {
+			buckets[p] = null;
+			heads[p] = 0;
+			sizes[p] = 0;
+		}
+		reset();
+	}
+
+	/**
+	 * Performs the given action on each element with its priority, 
+	 * in the order they would be polled.
+	 * @param action the action
+	 */
+	@SuppressWarnings("unchecked")
+	void forEach(ObjIntConsumer<E> action) {
+		for (int p=best; p<=worst; p++) {
+			Object[] bucket = buckets[p];
+			for (int i=0; i<sizes[p]; i++)
+				action.accept((E) bucket[(heads[p]+i) & (bucket.length-1)], p);
+		}
+	}
+	
+	/*
+	 * Moves the first and last pointers past the buckets emptied by a removal
+	 */
+	private void removed() {
+		if (--size==0) {
+			reset();
+			return;
+		}
+		while (sizes[best]==0) best++;
+		while (sizes[worst]==0) worst--;
+	}
+	
+	private void reset() {
+		size = 0;
+		best = Integer.MAX_VALUE;
+		worst = -1;
+	}
+	
+	private void expand(int length) {
+		length = Math.max(length, buckets.length*2);
+		Object[][] newBuckets = new Object[length][];
+		int[] newHeads = new int[length], newSizes = new int[length];
+		System.arraycopy(buckets, 0, newBuckets, 0, buckets.length);
+		System.arraycopy(heads, 0, newHeads, 0, heads.length);
+		System.arraycopy(sizes, 0, newSizes, 0, sizes.length);
+		buckets = newBuckets;
+		heads = newHeads;
+		sizes = newSizes;
+	}
+	
+	private Object[] grow(int p) {
+		Object[] bucket = buckets[p];
+		Object[] grown = new Object[bucket.length*2];
+		int head = heads[p], n = bucket.length-head;
+		System.arraycopy(bucket, head, grown, 0, n);
+		System.arraycopy(bucket, 0, grown, n, head);
+		heads[p] = 0;
+		buckets[p] = grown;
+		return grown;
+	}
+
+}
@@ -0,0 +1,128 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static it.uniroma3.crawler.factories.CrawlURLFactory.getCrawlUrl;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+
+import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.model.PageClass;
+
+/**
+ * A CompactQueue is a {@link MemoryQueue} that does not hold {@link CrawlURL} objects.
+ * <br>
+ * Each entry is the UTF-8 encoded URL, with its form parameters, relative to the 
+ * web site domain, and it is stored in the {@link BucketQueue} bucket of its 
+ * PageClass priority, which also identifies the PageClass. 
+ * A CrawlURL is built again only when the entry is handed out.
+ */
+class CompactQueue implements MemoryQueue {
+	private final BucketQueue<byte[]> entries;
+	private final PageClass[] classes; // indexed by priority
+	private final String domain;
+	
+	private byte[] headEntry; // the entry last decoded by first()
+	private CrawlURL head;
+	
+	/**
+	 * Constructs a new CompactQueue for the URLs of the given root {@link PageClass}
+	 * and its descendants.
+	 * @param root the root PageClass of a web site
+	 */
+	CompactQueue(PageClass root) {
+		SortedSet<PageClass> descendants = root.getDescendants();
+		this.entries = new BucketQueue<>();
+		this.classes = new PageClass[Math.max(1, descendants.size())];
+		this.classes[root.getPriority()] = root;
+		for (PageClass pclass : descendants)
+			this.classes[pclass.getPriority()] = pclass;
+		this.domain = root.getDomain();
+	}
+
+	@Override
+	public void add(CrawlURL curl) {
+		entries.add(priority(curl), encode(curl));
+	}
+
+	@Override
+	public CrawlURL first() {
+		byte[] entry = entries.first();
+		if (entry!=headEntry) {
+			head = (entry!=null) ? decode(entry, entries.firstPriority()) : null;
+			headEntry = entry;
+		}
+		return head;
+	}
+
+	@Override
+	public CrawlURL pollFirst() {
+		CrawlURL first = first();
+		entries.pollFirst();
+		return first;
+	}
+
+	@Override
+	public int firstPriority() {
+		return entries.firstPriority();
+	}
+
+	@Override
+	public CrawlURL exchange(CrawlURL curl) {
+		int p = priority(curl), last = entries.lastPriority();
+		if (p>=last) 
+			return curl;
+		CrawlURL evicted = decode(entries.pollLast(), last);
+		entries.add(p, encode(curl));
+		return evicted;
+	}
+
+	@Override
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public void clear() {
+		entries.clear();
+	}
+
+	@Override
+	public List<String[]> entries() {
+		List<String[]> list = new ArrayList<>(entries.size());
+		entries.forEach((entry, p) -> list.add(new String[]{url(entry), classes[p].getName()}));
+		return list;
+	}
+	
+	private int priority(CrawlURL curl) {
+		return curl.getPageClass().getPriority();
+	}
+	
+	private byte[] encode(CrawlURL curl) {
+		String url = curl.getUrlWithParameters();
+		if (url.startsWith(domain) && isRelative(url, domain.length()))
+			url = url.substring(domain.length());
+		return url.getBytes(UTF_8);
+	}
+	
+	private CrawlURL decode(byte[] entry, int p) {
+		return getCrawlUrl(url(entry), classes[p]);
+	}
+	
+	private String url(byte[] entry) {
+		String url = new String(entry, UTF_8);
+		return (isRelative(url, 0)) ? domain+url : url;
+	}
+	
+	/*
+	 * An absolute URL starts with its scheme, 
+	 * a relative one with its path, query, fragment or form parameters
+	 */
+	private static boolean isRelative(String url, int from) {
+		if (url.length()==from) return true;
+		char c = url.charAt(from);
+		return c=='/' || c=='?' || c=='#' || c=='>';
+	}
+
+}
@@ -1,60 +1,100 @@
 package it.uniroma3.crawler.actors.frontier;
 
 import static it.uniroma3.crawler.util.Commands.*;
+import static it.uniroma3.crawler.factories.CrawlURLFactory.getCrawlUrl;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Random;
-import java.util.TreeSet;
+import java.util.TreeMap;
 import java.util.concurrent.TimeUnit;
 
 import akka.actor.ActorRef;
+import akka.actor.Cancellable;
 import akka.actor.Props;
 import akka.event.Logging;
 import akka.event.LoggingAdapter;
 import akka.japi.Creator;
 import akka.persistence.AbstractPersistentActor;
+import akka.persistence.DeleteMessagesSuccess;
+import akka.persistence.DeleteSnapshotsSuccess;
 import akka.persistence.RecoveryCompleted;
+import akka.persistence.SaveSnapshotFailure;
+import akka.persistence.SaveSnapshotSuccess;
+import akka.persistence.SnapshotOffer;
+import akka.persistence.SnapshotSelectionCriteria;
 import it.uniroma3.crawler.actors.CrawlDataWriter;
 import it.uniroma3.crawler.actors.CrawlFetcher;
+import it.uniroma3.crawler.actors.CrawlFetcherPool;
+import it.uniroma3.crawler.messages.LeaseMsg;
 import it.uniroma3.crawler.messages.StoreURLMsg;
 import it.uniroma3.crawler.messages.OldURLMsg;
 import it.uniroma3.crawler.model.CrawlURL;
 import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.settings.CrawlerSettings;
 import scala.concurrent.duration.Duration;
 
 public class CrawlFrontier extends AbstractPersistentActor  {
 	LoggingAdapter log = Logging.getLogger(getContext().getSystem(), this);
+	private final static long TICK_MILLIS = 50;
+	private final static int WHEEL_SIZE = 512;
 
 	private CrawlQueue queue;
-	private TreeSet<CrawlURL> inProcessURLs;
+	private PageClass root;
+	private LeaseTable inProcessURLs;
+	private TreeMap<Long, List<File>> retiredFiles;
+	private int snapshotInterval;
+	private long lastSnapshotNr;
+	private boolean recovered;
+	private List<Object> pendingEvents;
+	private Queue<Runnable> pendingActions;
+	private int batchSize, batchWindow;
+	private boolean flushScheduled;
+	private PolitenessScheduler<ActorRef> politeness;
+	private int leaseSize;
+	private long leaseTimeout;
+	private Cancellable ticker;
 	private ActorRef writer;
 	private Random random;
 	private int maxPages;
 	private int pageCount;
 	private boolean isEnding;
 	private Queue<ActorRef> waitingFetchers;
+	private ActorRef pool;
+	private boolean poolWaiting;
 	
 	static class InnerProps implements Creator<CrawlFrontier> {
 		private static final long serialVersionUID = 1L;
 		private PageClass pclass;
-		private int fetchers, maxPages, size;
+		private CrawlerSettings set;
+		private ActorRef pool;
 		
-		public InnerProps(int fetchers, int max, int size, PageClass pclass) {
-			this.fetchers = fetchers;
-			this.maxPages = max;
-			this.size = size;
+		public InnerProps(CrawlerSettings set, PageClass pclass, ActorRef pool) {
+			this.set = set;
 			this.pclass = pclass;
+			this.pool = pool;
 		}
 
 		@Override
 		public CrawlFrontier create() throws Exception {
-			return new CrawlFrontier(fetchers, maxPages, size, pclass);
+			return new CrawlFrontier(set, pclass, pool);
 		}	
 	}
-		
-	public static Props props(int fetchers, int maxPages, int size, PageClass pclass) {
-		return Props.create(CrawlFrontier.class, new InnerProps(fetchers,maxPages,size, pclass));
+	
+	/**
+	 * @param set the crawler settings
+	 * @param pclass the root PageClass of the web site
+	 * @param pool the shared {@link CrawlFetcherPool}, or null to create dedicated fetchers
+	 * @return the Props of a CrawlFrontier
+	 */
+	public static Props props(CrawlerSettings set, PageClass pclass, ActorRef pool) {
+		return Props.create(CrawlFrontier.class, new InnerProps(set, pclass, pool));
 	}
 	
 	static class CompletedURL {
@@ -63,17 +103,54 @@ public class CrawlFrontier extends AbstractPersistentActor  {
 			this.url = url;
 		}
 	}
+	
+	static class ExpiredURL {
+		public final String url;
+		public ExpiredURL(String url) {
+			this.url = url;
+		}
+	}
+	
+	static class FrontierSnapshot {
+		public final CrawlQueue.State queue;
+		public final List<String[]> inProcess;
+		public FrontierSnapshot(CrawlQueue.State queue, List<String[]> inProcess) {
+			this.queue = queue;
+			this.inProcess = inProcess;
+		}
+	}
 
-	public CrawlFrontier(int fetchers, int maxPages, int size, PageClass pclass) {
+	public CrawlFrontier(CrawlerSettings set, PageClass pclass, ActorRef pool) {
+		long now = System.currentTimeMillis();
 		this.random = new Random();
 		this.isEnding = false;
-		this.queue = new CrawlQueue(size,pclass);
-		this.inProcessURLs = new TreeSet<>();
+		this.root = pclass;
+		this.queue = new CrawlQueue(set.frontierheap,pclass,set.visitedheap,set.sortedqueue);
+		this.retiredFiles = new TreeMap<>();
+		this.snapshotInterval = set.snapshot;
+		this.batchSize = set.batch;
+		this.batchWindow = set.batchwindow;
+		this.leaseSize = Math.max(1, set.lease);
+		this.leaseTimeout = set.leasetimeout*1000L;
+		this.pendingEvents = new ArrayList<>();
+		this.pendingActions = new LinkedList<>();
 		this.waitingFetchers = new LinkedList<>();
-		this.queue.deleteStorage();
-		this.maxPages = maxPages;
+		this.politeness = new PolitenessScheduler<>(TICK_MILLIS, WHEEL_SIZE, now);
+		this.inProcessURLs = new LeaseTable(TICK_MILLIS, WHEEL_SIZE, now);
+		this.ticker = context().system().scheduler().schedule(
+				Duration.create(TICK_MILLIS, TimeUnit.MILLISECONDS), 
+				Duration.create(TICK_MILLIS, TimeUnit.MILLISECONDS), 
+				self(), TICK, context().dispatcher(), self());
+		this.maxPages = set.pages;
 		this.writer = context().actorOf(Props.create(CrawlDataWriter.class), "writer");
-		createFetchers(fetchers);
+		this.pool = pool;
+		if (pool==null) createFetchers(set.fetchers);
+	}
+	
+	@Override
+	public void postStop() throws Exception {
+		ticker.cancel();
+		super.postStop();
 	}
 	
 	@Override
@@ -84,65 +161,248 @@ public class CrawlFrontier extends AbstractPersistentActor  {
 	@Override
 	public Receive createReceiveRecover() {
 		return receiveBuilder()
+		.match(SnapshotOffer.class, offer -> {
+			restore((FrontierSnapshot) offer.snapshot());
+			lastSnapshotNr = offer.metadata().sequenceNr();
+		})
 		.matchEquals(NEXT, n -> { 
+			checkStorage();
 			CrawlURL next = queue.next();
-			if (next!=null) inProcessURLs.add(next);
+			if (next!=null) inProcessURLs.lease(next, 0);
 		})
-		.match(StoreURLMsg.class, ev -> queue.add(ev.getURL(), ev.getPageClass()))
-		.match(CompletedURL.class, ev -> {
-			for (CrawlURL curl : inProcessURLs) {
-				if (curl.getStringUrl().equals(ev.url)) {
-					inProcessURLs.remove(curl); 
-					break;
-				}
-			}
+		.match(StoreURLMsg.class, ev -> {
+			checkStorage();
+			queue.add(ev.getURL(), ev.getPageClass());
+		})
+		.match(CompletedURL.class, ev -> inProcessURLs.remove(ev.url))
+		.match(ExpiredURL.class, ev -> {
+			CrawlURL curl = inProcessURLs.remove(ev.url);
+			if (curl!=null) queue.recover(curl);
 		})
 		.match(RecoveryCompleted.class, ev -> {
-			log.info("RECOVERING "+inProcessURLs.toString());
-			inProcessURLs.forEach(queue::recover);
+			checkStorage();
+			log.info("RECOVERING "+inProcessURLs.keys().toString());
+			inProcessURLs.urls().forEach(queue::recover);
 			inProcessURLs.clear();
 		})
 		.build();
 	}
 	
+	/*
+	 * Without a snapshot, the queue is rebuilt from the whole journal:
+	 * any storage file left by a previous run is stale.
+	 */
+	private void checkStorage() {
+		if (!recovered) {
+			queue.deleteStorage();
+			recovered = true;
+		}
+	}
+	
+	private void restore(FrontierSnapshot snapshot) throws IOException {
+		queue.restore(snapshot.queue);
+		inProcessURLs.clear();
+		for (String[] entry : snapshot.inProcess) {
+			CrawlURL curl = getCrawlUrl(entry[0], root.getDescendant(entry[1]));
+			if (curl!=null) inProcessURLs.lease(curl, 0);
+		}
+		recovered = true;
+		log.info("Restored snapshot of "+queue.size()+" URLs");
+	}
+	
 	@Override
 	public Receive createReceive() {
 		return receiveBuilder()
 		.matchEquals(START, msg -> context().actorSelection("*").tell(msg, self()))
-		.matchEquals(NEXT, n -> {if (!end()) retrieve();})
+		.matchEquals(NEXT, n -> {
+			if (!end()) retrieve();
+			else if (pool!=null) pool.tell(new CrawlFetcherPool.UnavailableMsg(sender()), self());})
 		.match(StoreURLMsg.class, msg -> {if (!end()) store(msg);})
 		.match(OldURLMsg.class, this::complete)
+		.matchEquals(FLUSH, msg -> flush())
+		.matchEquals(TICK, msg -> tick())
+		.match(SaveSnapshotSuccess.class, this::compact)
+		.match(SaveSnapshotFailure.class, msg -> 
+			log.warning("Cannot save snapshot: "+msg.cause().getMessage()))
+		.match(DeleteMessagesSuccess.class, msg -> {})
+		.match(DeleteSnapshotsSuccess.class, msg -> {})
 		.build();
 	}
 	
 	private void store(StoreURLMsg msg) {
 		if (queue.add(msg.getURL(), msg.getPageClass())) {
-			persist(msg, (StoreURLMsg ev) -> {});
+			record(msg, () -> {});
 			if (!waitingFetchers.isEmpty())
-				self().tell(NEXT, waitingFetchers.poll());
+				wake(waitingFetchers.poll());
 		}
 	}
 		
+	/*
+	 * A fetcher is granted a lease of at most leaseSize URLs, only when the 
+	 * politeness slot of the top URL host is due: otherwise the fetcher is parked 
+	 * until the next-allowed time of the host. Each leased URL comes with the 
+	 * delay after which it can be fetched, i.e. the next free slot of its host.
+	 */
 	private void retrieve() {
-		if (!queue.isEmpty()) 
-			persist(NEXT, ev -> sendURL(queue.next()));
-		else waitingFetchers.add(sender());
+		CrawlURL head = queue.peek();
+		if (head==null) {
+			ActorRef waiting = release(sender());
+			if (waiting!=null) waitingFetchers.add(waiting);
+			return;
+		}
+		long now = System.currentTimeMillis();
+		String host = head.getUrl().getHost();
+		if (politeness.nextAllowed(host)>now) {
+			ActorRef waiting = release(sender());
+			if (waiting!=null) politeness.park(host, waiting);
+			return;
+		}
+		ActorRef fetcher = sender();
+		List<CrawlURL> urls = new ArrayList<>();
+		long[] delays = new long[leaseSize];
+		while (urls.size()<leaseSize && pageCount<maxPages && (head=queue.peek())!=null) {
+			PageClass pClass = head.getPageClass();
+			long wait = pClass.getWaitTime() + random.nextInt(pClass.getPause());
+			long due = politeness.reserve(head.getUrl().getHost(), now, wait);
+			CrawlURL next = queue.next();
+			delays[urls.size()] = due-now;
+			urls.add(next);
+			inProcessURLs.lease(next, due+leaseTimeout);
+			pageCount++;
+		}
+		LeaseMsg msg = new LeaseMsg(urls, Arrays.copyOf(delays, urls.size()));
+		for (int i=0; i<urls.size(); i++)
+			record(NEXT, (i<urls.size()-1) ? () -> {} : () -> sendLease(msg, fetcher));
+	}
+	
+	/*
+	 * With a shared pool, a fetcher that cannot be served goes back to the pool,
+	 * and the pool itself waits (once) for this frontier to be ready again
+	 */
+	private ActorRef release(ActorRef fetcher) {
+		if (pool==null) return fetcher;
+		pool.tell(new CrawlFetcherPool.UnavailableMsg(fetcher), self());
+		if (poolWaiting) return null;
+		poolWaiting = true;
+		return pool;
 	}
 	
-	private void sendURL(CrawlURL next) {
-		PageClass pClass = next.getPageClass();
-		long wait = pClass.getWaitTime() + random.nextInt(pClass.getPause());
-		context().system().scheduler().scheduleOnce(
-				Duration.create(wait, TimeUnit.MILLISECONDS),
-				sender(), next, context().dispatcher(), self());
-		log.info(""+(++pageCount));
+	private void wake(ActorRef waiting) {
+		if (waiting.equals(pool)) {
+			poolWaiting = false;
+			pool.tell(READY, self());
+		}
+		else self().tell(NEXT, waiting);
+	}
+	
+	private void tick() {
+		long now = System.currentTimeMillis();
+		politeness.advance(now).forEach(this::wake);
+		for (CrawlURL curl : inProcessURLs.expire(now)) {
+			log.warning("Lease expired: "+key(curl));
+			queue.recover(curl);
+			record(new ExpiredURL(key(curl)), () -> {});
+			if (!waitingFetchers.isEmpty())
+				wake(waitingFetchers.poll());
+		}
+	}
+	
+	/*
+	 * The state is updated as soon as a message is received, while the 
+	 * action depending on the event is taken only once the event is persisted.
+	 * With batching enabled, events are written with a single persistAll
+	 * as soon as batchSize events are pending, or when the batch window expires
+	 * (when the mailbox has been drained, if no window is set).
+	 */
+	private void record(Object event, Runnable action) {
+		if (batchSize<=1) {
+			persist(event, ev -> {
+				action.run();
+				snapshot();
+			});
+		}
+		else {
+			pendingEvents.add(event);
+			pendingActions.add(action);
+			if (pendingEvents.size()>=batchSize) flush();
+			else if (!flushScheduled) {
+				flushScheduled = true;
+				if (batchWindow>0)
+					context().system().scheduler().scheduleOnce(
+							Duration.create(batchWindow, TimeUnit.MILLISECONDS), 
+							self(), FLUSH, context().dispatcher(), self());
+				else self().tell(FLUSH, self());
+			}
+		}
+	}
+	
+	private void flush() {
+		flushScheduled = false;
+		if (pendingEvents.isEmpty()) return;
+		List<Object> events = pendingEvents;
+		Queue<Runnable> actions = pendingActions;
+		pendingEvents = new ArrayList<>();
+		pendingActions = new LinkedList<>();
+		persistAll(events, ev -> {
+			actions.poll().run();
+			if (actions.isEmpty()) snapshot();
+		});
+	}
+	
+	/*
+	 * Saves a snapshot every snapshotInterval persisted events.
+	 * Files retired by the queue since the previous snapshot are kept 
+	 * until this snapshot has been saved.
+	 */
+	private void snapshot() {
+		if (snapshotInterval>0 && lastSequenceNr()-lastSnapshotNr>=snapshotInterval) {
+			lastSnapshotNr = lastSequenceNr();
+			try {
+				List<String[]> inProcess = new ArrayList<>();
+				for (CrawlURL curl : inProcessURLs.urls())
+					inProcess.add(new String[]{key(curl), curl.getPageClass().getName()});
+				saveSnapshot(new FrontierSnapshot(queue.snapshot(), inProcess));
+				retiredFiles.put(lastSequenceNr(), queue.retired());
+			} catch (IOException e) {
+				log.warning("Cannot take snapshot: "+e.getMessage());
+			}
+		}
+	}
+	
+	/*
+	 * Once a snapshot is saved, older events, snapshots 
+	 * and storage files are no longer needed
+	 */
+	private void compact(SaveSnapshotSuccess msg) {
+		long sequenceNr = msg.metadata().sequenceNr();
+		deleteMessages(sequenceNr);
+		deleteSnapshots(SnapshotSelectionCriteria.create(sequenceNr-1, Long.MAX_VALUE));
+		Map<Long, List<File>> released = retiredFiles.headMap(sequenceNr, true);
+		released.values().forEach(files -> files.forEach(File::delete));
+		released.clear();
+	}
+	
+	private void sendLease(LeaseMsg msg, ActorRef fetcher) {
+		fetcher.tell(msg, self());
+		log.info(""+pageCount);
 	}
 	
 	private void complete(OldURLMsg msg) {
 		CrawlURL curl = msg.getURL();
 		writer.tell(curl, self());
-		CompletedURL event = new CompletedURL(curl.getStringUrl());
-		persist(event, ev -> {});
+		inProcessURLs.remove(key(curl));
+		record(new CompletedURL(key(curl)), () -> {});
+	}
+	
+	/**
+	 * Returns the key of an in-process URL: the URL with its form parameters,
+	 * as returned by {@link CrawlURL#getUrlWithParameters()}, so that
+	 * different submissions of the same form are completed separately.
+	 * @param curl the URL
+	 * @return the key of the URL
+	 */
+	static String key(CrawlURL curl) {
+		return curl.getUrlWithParameters();
 	}
 	
 	private boolean end() {
@@ -1,23 +1,11 @@
 package it.uniroma3.crawler.actors.frontier;
 
-import java.io.FileWriter;
+import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
-
-import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
-
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import com.csvreader.CsvReader;
-import com.csvreader.CsvWriter;
-
 import static it.uniroma3.crawler.factories.CrawlURLFactory.getCrawlUrl;
 import it.uniroma3.crawler.model.CrawlURL;
 import it.uniroma3.crawler.model.PageClass;
@@ -27,19 +15,41 @@ import it.uniroma3.crawler.util.FileUtils;
  * A CrawlQueue is a queue of priority-ordered {@link CrawlURL} elements <b>of the same Host</b> with a fixed-size
  * in-memory capacity. 
  * <br>
+ * The priority of a CrawlURL is the {@link PageClass#getPriority() rank} of its PageClass. 
+ * By default the in-memory side is a {@link CompactQueue}, where CrawlURLs of the same PageClass 
+ * are handed out in insertion order and kept as compact entries until then; 
+ * a sorted queue also orders them by URL, as a {@link CrawlURL} compares.
+ * <br>
  * When the in-memory side of the CrawlQueue is full, the exceeding CrawlURL elements are stored 
- * on a persistent-side file queue. 
+ * on a persistent-side {@link SpillStore}, in a chain of segments for each PageClass priority. 
+ * <br>
+ * Visited URLs are tracked by their 64-bit fingerprints in a {@link FingerprintSet}, 
+ * whose in-memory table is bounded by a configurable memory budget.
  */
 public class CrawlQueue {
 	private static Logger log = Logger.getLogger(CrawlQueue.class.getName());
-	private String storage;
-	private String temp;
+	private final static long VISITED_BUDGET = 8*1024*1024;
+	private SpillStore storage;
 
 	private int max;
-	private int sizeStorage;
-	private Set<String> visited;
+	private FingerprintSet visited;
 	private PageClass root;
-	private TreeSet<CrawlURL> urls; // discovered URLs 
+	private MemoryQueue urls; // discovered URLs 
+	
+	/**
+	 * A snapshot of the state of a CrawlQueue
+	 */
+	public static class State {
+		private final List<String[]> urls;
+		private final SpillStore.State storage;
+		private final FingerprintSet.State visited;
+		
+		State(List<String[]> urls, SpillStore.State storage, FingerprintSet.State visited) {
+			this.urls = urls;
+			this.storage = storage;
+			this.visited = visited;
+		}
+	}
 	
 	/**
 	 * Constructs a new CrawlQueue with the given maximum in-memory capacity<br>
@@ -49,39 +59,68 @@ public class CrawlQueue {
 	 * @param root the root PageClass of a web site
 	 */
 	public CrawlQueue(int max, PageClass root) {
+		this(max, root, VISITED_BUDGET, false);
+	}
+	
+	/**
+	 * Constructs a new CrawlQueue with the given maximum in-memory capacity,<br>
+	 * the specified root {@link PageClass} and the given memory budget for the 
+	 * visited URLs fingerprints. The initialized queue contains
+	 * the seed of the corresponding web site.
+	 * @param max the max number of elements that can be stored in memory
+	 * @param root the root PageClass of a web site
+	 * @param visitedBudget the max number of bytes of the in-memory visited set
+	 * @param sorted true to order the CrawlURLs of the same PageClass by URL, 
+	 * false to hand them out in insertion order
+	 */
+	public CrawlQueue(int max, PageClass root, long visitedBudget, boolean sorted) {
+		String name = FileUtils.normalizeURL(root.getDomain());
 		this.max = max;
-		this.visited = new HashSet<>();
-		this.urls = new TreeSet<>();
+		this.urls = (sorted) ? new SortedQueue() : new CompactQueue(root);
 		this.root = root;
+		this.storage = new SpillStore("src/main/resources/storage/queue_"+name);
+		this.visited = new FingerprintSet(visitedBudget, 
+				"src/main/resources/storage/visited_"+name);
 		this.add(getCrawlUrl(root.getDomain(), root));
-		this.storage = "src/main/resources/storage/queue_"
-				+FileUtils.normalizeURL(root.getDomain())+".csv";
-		this.temp = storage+"~";
 	}
 	
 	/**
-	 * Retrieves the next top-priority (in memory) {@link CrawlURL} from this queue.
+	 * Retrieves the next top-priority {@link CrawlURL} from this queue.
 	 * <br>
-	 * Due to the low-efficient implementation of the persistent-side of this queue, 
-	 * there could be elements more important then the one returned in the persistent-side. 
-	 * @return the (in memory) top-priority CrawlURL, or null if the queue is empty
+	 * If the persistent-side holds a URL of a higher PageClass priority than the 
+	 * in-memory top-priority one, that URL is returned instead.
+	 * @return the top-priority CrawlURL, or null if the queue is empty
 	 */
 	public CrawlURL next() {
-		if (urls.isEmpty() && sizeStorage>0) 
-			dequeue(max);		
+		refill();
 		CrawlURL next = urls.pollFirst();
 		return next;
 	}
 	
 	/**
-	 * Adds the given {@link CrawlURL} to this queue if it has not been visited yet. 
+	 * Retrieves, but does not remove, the next top-priority {@link CrawlURL} from this queue.
+	 * @return the top-priority CrawlURL, or null if the queue is empty
+	 */
+	public CrawlURL peek() {
+		refill();
+		return urls.first();
+	}
+	
+	/**
+	 * Adds the given {@link CrawlURL} to this queue if it has not been visited yet
+	 * and its PageClass is {@link PageClass#isRelevant() relevant}. 
 	 * @param curl CrawlURL
-	 * @return true if the CrawlURL was added to this queue, false if it was already visited
+	 * @return true if the CrawlURL was added to this queue, false if it was already visited or dropped
 	 */
 	public boolean add(CrawlURL curl) {
-		if (visited.add(checksum(curl.getRelativeUrl()))) {
-			addToQueue(curl);
-			return true;
+		if (!curl.getPageClass().isRelevant()) return false;
+		try {
+			if (visited.add(curl.getRelativeUrl())) {
+				addToQueue(curl);
+				return true;
+			}
+		} catch (IOException e) {
+			log.log(Level.SEVERE, "Cannot access Visited URLs Storage: "+e.getMessage());
 		}
 		return false;
 	}
@@ -112,7 +151,7 @@ public class CrawlQueue {
 	 * @return the size of this queue
 	 */
 	public int size() {
-		return urls.size()+sizeStorage;
+		return urls.size()+storage.size();
 	}
 	
 	/**
@@ -124,95 +163,118 @@ public class CrawlQueue {
 	}
 	
 	/**
-	 * Deletes the current Storage file if exists
+	 * Returns the number of distinct URLs ever added to this queue
+	 * @return the number of visited URLs
+	 */
+	public long visitedSize() {
+		return visited.size();
+	}
+	
+	/**
+	 * Deletes the current Storage segments and visited URLs runs if exist
 	 * @return true if the Storage was deleted, false otherwise
 	 */
 	public boolean deleteStorage() {
 		try {
-			return Files.deleteIfExists(Paths.get(storage));
+			boolean deleted = storage.delete();
+			return visited.delete() || deleted;
 		} catch (IOException e) {
 			return false;
 		}
 	}
 	
+	/**
+	 * Returns the current state of this queue: the in-memory URLs, the 
+	 * persistent-side segments and the visited URLs fingerprints. 
+	 * <br>
+	 * The files the state refers to are retained until they are returned by {@link #retired()}.
+	 * @return the state of this queue
+	 * @throws IOException if the persistent-side cannot be flushed
+	 */
+	public State snapshot() throws IOException {
+		return new State(urls.entries(), storage.snapshot(), visited.snapshot());
+	}
+	
+	/**
+	 * Replaces the content of this queue with the given state.
+	 * <br>
+	 * Files the state does not refer to are deleted.
+	 * @param state the state to restore
+	 * @throws IOException if the persistent-side cannot be read
+	 */
+	public void restore(State state) throws IOException {
+		urls.clear();
+		for (String[] entry : state.urls) {
+			CrawlURL curl = getCrawlUrl(entry[0], root.getDescendant(entry[1]));
+			if (curl!=null) urls.add(curl);
+		}
+		storage.restore(state.storage);
+		visited.restore(state.visited);
+	}
+	
+	/**
+	 * Returns the files that no longer belong to this queue since the last call, 
+	 * but that a previous state may still refer to.
+	 * @return the retired files
+	 */
+	public List<File> retired() {
+		List<File> files = storage.retired();
+		files.addAll(visited.retired());
+		return files;
+	}
+	
 	private void addToQueue(CrawlURL curl) {
 		if (urls.size()<max)
 			urls.add(curl);
-		else {
-			CrawlURL toStore = curl;
-			CrawlURL last = urls.last();
-			if (curl.compareTo(last)<=-1) {
-				urls.pollLast();
-				urls.add(curl);
-				toStore = last;
-			}
-			enqueue(toStore);
-		}
+		else
+			enqueue(urls.exchange(curl));
 	}
 	 
 	/**
-	 * Appends the given {@link CrawlURL} to the persistent-side queue.
-	 * The priority order is not preserved
+	 * Appends the given {@link CrawlURL} to the persistent-side queue, 
+	 * in the segment chain of its PageClass priority.
 	 * @param curl the CrawlURL
 	 */
 	private void enqueue(CrawlURL curl) {		
 		try {
-			CsvWriter writer = new CsvWriter(new FileWriter(storage, true), '\t');
-			writer.write(curl.getRelativeUrl());
-			writer.write(curl.getPageClass().getName());
-			writer.endRecord();
-			writer.flush();
-			writer.close();	
-			sizeStorage++;
+			storage.append(priority(curl), curl.getUrlWithParameters(), 
+					curl.getPageClass().getName());
 		} catch (IOException e) {
 			log.log(Level.WARNING, "Cannot store CURL to Queue Storage");
 		}
 	}
 	
 	/**
-	 * Fills the queue with the given number of URLs from the persistent-side of the queue 
-	 * <br><br>
-	 * Note that there is no warranty that the given dequeued URLs are the most relevant
-	 * with respect to the entire persistent-side queue
+	 * Fills the queue with at most the given number of URLs from the persistent-side 
+	 * of the queue, reading the head segments of its top-priority chain.
 	 * @param quantity number of urls to retrieve
 	 */
 	private void dequeue(int quantity) {
-		int count = quantity;
 		try {
-			CsvWriter writer = new CsvWriter(new FileWriter(temp), '\t');
-			CsvReader reader = new CsvReader(storage, '\t');
-			while (reader.readRecord()) {
-				String relativeURL = reader.get(0);
-				String name = reader.get(1);
-				if (count>0) {
-					PageClass pclass = root.getDescendant(name);
-					String url = root.getDomain() + relativeURL;
-					urls.add(getCrawlUrl(url,pclass));
-					count--;
-				}
-				else writer.writeRecord(reader.getValues());
+			for (String[] record : storage.poll(quantity)) {
+				PageClass pclass = root.getDescendant(record[1]);
+				CrawlURL curl = getCrawlUrl(record[0], pclass);
+				if (curl!=null) urls.add(curl);
 			}
-			reader.close();
-			writer.flush();
-			writer.close();
-			Files.move(Paths.get(temp), Paths.get(storage), REPLACE_EXISTING);
-			
-			sizeStorage -= (quantity-count);
 		} catch (IOException ie) {
 			log.log(Level.SEVERE, "Cannot retrieve CURL from Queue Storage: "+ie.getMessage());
 		}
 	}
 	
-    private String checksum(String input)  {
-    	MessageDigest md;
-		try {
-			md = MessageDigest.getInstance("SHA");
-	        final byte[] checkSumBytes = md.digest(input.getBytes());
-	        final String result = new String(checkSumBytes);
-	        return result;
-		} catch (NoSuchAlgorithmException e) {
-			log.log(Level.SEVERE, "Cannot make URL checksum");
-			return null;
+	/*
+	 * Moves URLs from the persistent-side if it holds a URL of a higher 
+	 * PageClass priority than the in-memory top-priority one
+	 */
+	private void refill() {
+		if (storage.size()>0) {
+			if (urls.isEmpty()) 
+				dequeue(max);
+			else if (storage.bestPriority()<urls.firstPriority())
+				dequeue(1);
 		}
-    }
+	}
+	
+	private int priority(CrawlURL curl) {
+		return curl.getPageClass().getPriority();
+	}
 }
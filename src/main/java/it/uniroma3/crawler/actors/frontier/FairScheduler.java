@@ -0,0 +1,114 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A FairScheduler shares a resource among weighted queues with stride scheduling, 
+ * an approximation of weighted fair queueing.
+ * <br>
+ * Each queue has a pass value that grows by the inverse of its weight every time 
+ * it is served: the ready queue with the lowest pass is served first. 
+ * A queue that becomes ready again does not keep the credit it gained while 
+ * it was not ready, so it cannot starve the others.
+ * @param <K> the type of the queues
+ */
+public class FairScheduler<K> {
+	private final Map<K, Flow> flows;
+	private double virtualTime;
+	
+	private static class Flow {
+		private final double stride;
+		private double pass;
+		private boolean ready;
+		
+		private Flow(int weight, double pass) {
+			this.stride = 1.0/Math.max(1, weight);
+			this.pass = pass;
+			this.ready = true;
+		}
+	}
+	
+	/**
+	 * Constructs a new empty FairScheduler.
+	 */
+	public FairScheduler() {
+		this.flows = new LinkedHashMap<>();
+	}
+	
+	/**
+	 * Adds the given ready queue with the given weight.
+	 * @param key the queue
+	 * @param weight the share of the resource of the queue, relative to the other ones
+	 */
+	public void add(K key, int weight) {
+		flows.put(key, new Flow(weight, virtualTime));
+	}
+	
+	/**
+	 * Removes the given queue.
+	 * @param key the queue
+	 */
+	public void remove(K key) {
+		flows.remove(key);
+	}
+	
+	/**
+	 * Serves the ready queue with the lowest pass.
+	 * @return the queue to be served, or null if no queue is ready
+	 */
+	public K next() {
+		K next = null;
+		Flow min = null;
+		for (Map.Entry<K, Flow> e : flows.entrySet()) {
+			Flow flow = e.getValue();
+			if (flow.ready && (min==null || flow.pass<min.pass)) {
+				min = flow;
+				next = e.getKey();
+			}
+		}
+		if (min!=null) {
+			virtualTime = min.pass;
+			min.pass += min.stride;
+		}
+		return next;
+	}
+	
+	/**
+	 * Gives back the last service to the given queue, 
+	 * when it turned out it had nothing to be served.
+	 * @param key the queue
+	 */
+	public void refund(K key) {
+		Flow flow = flows.get(key);
+		if (flow!=null) flow.pass -= flow.stride;
+	}
+	
+	/**
+	 * Sets whether the given queue can be served.
+	 * @param key the queue
+	 * @param ready true if the queue can be served
+	 */
+	public void setReady(K key, boolean ready) {
+		Flow flow = flows.get(key);
+		if (flow==null) return;
+		if (ready && !flow.ready) 
+			flow.pass = Math.max(flow.pass, virtualTime);
+		flow.ready = ready;
+	}
+	
+	/**
+	 * @return true if at least one queue can be served
+	 */
+	public boolean hasReady() {
+		return flows.values().stream().anyMatch(f -> f.ready);
+	}
+	
+	/**
+	 * @return the number of queues
+	 */
+	public int size() {
+		return flows.size();
+	}
+
+}
@@ -0,0 +1,476 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A FingerprintSet is a set of 64-bit fingerprints of visited URLs.
+ * <br>
+ * Fingerprints are kept in an open-addressing table of primitive longs that grows
+ * up to the given memory budget. When the budget is exceeded, the table is sorted and
+ * spilled to disk as an immutable run, so that the set can hold far more fingerprints
+ * than the ones fitting in memory. Each run keeps a sparse index and a Bloom filter
+ * in memory (about 1.3 bytes per fingerprint), so that a lookup costs
+ * at most one block read for each run: they are counted in the memory budget, 
+ * hence the table shrinks as the runs grow, down to a minimum capacity.
+ * <br>
+ * Runs are merged by size tiers: whenever {@value #FANOUT} runs of the same tier 
+ * are found, they are merged in a run of the next tier, so that each fingerprint is
+ * rewritten once per tier and the number of runs grows with the logarithm of the size.
+ * <br>
+ * Once a {@link State} has been taken, merged runs are retired rather than deleted, 
+ * since the snapshot may still refer to them.
+ */
+public class FingerprintSet {
+	private final static int MIN_CAPACITY = 1 << 10;
+	private final static int BLOCK = 512; // fingerprints per index entry
+	private final static int FANOUT = 4; // runs of a tier merged together
+	private final static long EMPTY = 0L;
+
+	private final Path directory;
+	private final long memoryBudget;
+	private final List<Run> runs;
+	private long runsMemory; // bytes of the indexes and Bloom filters of the runs
+	private List<File> retired;
+	private boolean retain;
+	private long[] table;
+	private int entries;
+	private long size;
+	private int sequence;
+	
+	/**
+	 * The state of a FingerprintSet: the in-memory fingerprints 
+	 * and the runs it refers to.
+	 */
+	static class State {
+		private final long[] fingerprints;
+		private final long size;
+		private final int sequence;
+		private final List<String> runs;
+		private final long[] lengths;
+		
+		State(long[] fingerprints, long size, int sequence, List<String> runs, long[] lengths) {
+			this.fingerprints = fingerprints;
+			this.size = size;
+			this.sequence = sequence;
+			this.runs = runs;
+			this.lengths = lengths;
+		}
+	}
+
+	/**
+	 * An immutable file of sorted fingerprints
+	 */
+	private class Run {
+		private final File file;
+		private final long length;
+		private final long[] index; // first fingerprint of each block
+		private final long[] bloom;
+		private final FileChannel channel;
+
+		Run(File file, long[] index, long[] bloom, long length) throws IOException {
+			this.file = file;
+			this.index = index;
+			this.bloom = bloom;
+			this.length = length;
+			this.channel = new RandomAccessFile(file, "r").getChannel();
+		}
+
+		boolean contains(long fp) throws IOException {
+			if (!mayContain(bloom, fp)) return false;
+			int pos = Arrays.binarySearch(index, fp);
+			if (pos>=0) return true;
+			int block = -pos-2;
+			if (block<0) return false;
+			long start = (long) block*BLOCK;
+			int n = (int) Math.min(BLOCK, length-start);
+			ByteBuffer buffer = ByteBuffer.allocate(n*Long.BYTES);
+			long offset = start*Long.BYTES;
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer, offset+buffer.position())<0) break;
+			}
+			buffer.flip();
+			int low = 0, high = buffer.remaining()/Long.BYTES-1;
+			while (low<=high) {
+				int mid = (low+high) >>> 1;
+				long value = buffer.getLong(mid*Long.BYTES);
+				if (value<fp) low = mid+1;
+				else if (value>fp) high = mid-1;
+				else return true;
+			}
+			return false;
+		}
+
+		long memory() {
+			return (index.length+bloom.length)*(long) Long.BYTES;
+		}
+
+		void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {}
+		}
+	}
+
+	/**
+	 * Constructs a new FingerprintSet whose in-memory table never exceeds
+	 * the given number of bytes, spilling the exceeding fingerprints in the given directory.
+	 * @param memoryBudget the max size in bytes of the in-memory table,
+	 * of the indexes and of the Bloom filters of the runs
+	 * @param directory the directory of the spilled runs
+	 */
+	public FingerprintSet(long memoryBudget, String directory) {
+		this.memoryBudget = memoryBudget;
+		this.directory = Paths.get(directory);
+		this.runs = new ArrayList<>();
+		this.retired = new ArrayList<>();
+		this.table = new long[Math.min(MIN_CAPACITY, maxCapacity())];
+	}
+
+	/**
+	 * Returns the 64-bit fingerprint of the given String.
+	 * @param key the String, i.e. a URL
+	 * @return the fingerprint
+	 */
+	public static long fingerprint(String key) {
+		long h = 0xcbf29ce484222325L; // FNV-1a
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			h ^= (b & 0xff);
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33; // murmur3 finalizer
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return (h!=EMPTY) ? h : 1L;
+	}
+
+	/**
+	 * Adds the fingerprint of the given String to this set.
+	 * @param key the String, i.e. a URL
+	 * @return true if the fingerprint was not already in this set
+	 * @throws IOException if the spilled runs cannot be read or written
+	 */
+	public boolean add(String key) throws IOException {
+		return add(fingerprint(key));
+	}
+
+	/**
+	 * Adds the given fingerprint to this set.
+	 * @param fp the fingerprint
+	 * @return true if the fingerprint was not already in this set
+	 * @throws IOException if the spilled runs cannot be read or written
+	 */
+	public boolean add(long fp) throws IOException {
+		if (fp==EMPTY) fp = 1L;
+		int slot = slot(table, fp);
+		if (table[slot]==fp || inRuns(fp)) return false;
+		table[slot] = fp;
+		entries++;
+		size++;
+		if (entries*4L>=table.length*3L) grow();
+		return true;
+	}
+
+	/**
+	 * Returns true if the fingerprint of the given String is in this set.
+	 * @param key the String, i.e. a URL
+	 * @return true if the fingerprint is in this set
+	 * @throws IOException if the spilled runs cannot be read
+	 */
+	public boolean contains(String key) throws IOException {
+		long fp = fingerprint(key);
+		return table[slot(table, fp)]==fp || inRuns(fp);
+	}
+
+	/**
+	 * Returns the number of fingerprints in this set.
+	 * @return the size of this set
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Closes the spilled runs and deletes their directory.
+	 * <br>
+	 * The fingerprints in the in-memory table are kept.
+	 * @return true if the directory was deleted, false otherwise
+	 * @throws IOException if an IO error occurs
+	 */
+	public boolean delete() throws IOException {
+		runs.forEach(Run::close);
+		runs.clear();
+		runsMemory = 0;
+		retired.clear();
+		retain = false;
+		size = entries;
+		if (!Files.exists(directory)) return false;
+		Files.walk(directory)
+		.sorted(Comparator.reverseOrder())
+		.map(Path::toFile)
+		.forEach(File::delete);
+		return true;
+	}
+
+	/**
+	 * Returns the current state of this set.
+	 * <br>
+	 * From now on, merged runs are retired instead of being deleted.
+	 * @return the state of this set
+	 */
+	State snapshot() {
+		long[] fingerprints = new long[entries];
+		int i = 0;
+		for (long fp : table) {
+			if (fp!=EMPTY) fingerprints[i++] = fp;
+		}
+		List<String> files = new ArrayList<>();
+		long[] lengths = new long[runs.size()];
+		for (int r=0; r<runs.size(); r++) {
+			files.add(runs.get(r).file.getName());
+			lengths[r] = runs.get(r).length;
+		}
+		retain = true;
+		return new State(fingerprints, size, sequence, files, lengths);
+	}
+	
+	/**
+	 * Replaces the content of this set with the given state.
+	 * <br>
+	 * Runs the state does not refer to are deleted.
+	 * @param state the state to restore
+	 * @throws IOException if a run cannot be read
+	 */
+	void restore(State state) throws IOException {
+		runs.forEach(Run::close);
+		runs.clear();
+		runsMemory = 0;
+		retain = true;
+		if (Files.exists(directory)) {
+			try (Stream<Path> files = Files.list(directory)) {
+				files.filter(f -> !state.runs.contains(f.getFileName().toString()))
+				.map(Path::toFile)
+				.forEach(File::delete);
+			}
+		}
+		for (int r=0; r<state.runs.size(); r++) {
+			File file = directory.resolve(state.runs.get(r)).toFile();
+			runs.add(openRun(file, state.lengths[r]));
+		}
+		int capacity = Math.min(MIN_CAPACITY, maxCapacity());
+		while (state.fingerprints.length*4L>=capacity*3L) 
+			capacity *= 2;
+		table = new long[capacity];
+		for (long fp : state.fingerprints) table[slot(table, fp)] = fp;
+		entries = state.fingerprints.length;
+		size = state.size;
+		sequence = state.sequence;
+	}
+	
+	/**
+	 * Returns the runs retired since the last call, 
+	 * that is the merged runs that a snapshot may still refer to.
+	 * @return the retired run files
+	 */
+	List<File> retired() {
+		List<File> files = retired;
+		retired = new ArrayList<>();
+		return files;
+	}
+
+	private boolean inRuns(long fp) throws IOException {
+		for (Run run : runs) {
+			if (run.contains(fp)) return true;
+		}
+		return false;
+	}
+
+	/*
+	 * Returns the max capacity of the table, within the memory budget 
+	 * left by the indexes and Bloom filters of the runs
+	 */
+	private int maxCapacity() {
+		long slots = Math.max(MIN_CAPACITY, (memoryBudget-runsMemory)/Long.BYTES);
+		return Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+	}
+
+	private void grow() throws IOException {
+		if (table.length<maxCapacity()) {
+			long[] old = table;
+			table = new long[old.length*2];
+			for (long fp : old) {
+				if (fp!=EMPTY) table[slot(table, fp)] = fp;
+			}
+		}
+		else spill();
+	}
+
+	private void spill() throws IOException {
+		long[] sorted = new long[entries];
+		int i = 0;
+		for (long fp : table) {
+			if (fp!=EMPTY) sorted[i++] = fp;
+		}
+		Arrays.sort(sorted);
+		Files.createDirectories(directory);
+		File file = directory.resolve("run_"+(sequence++)+".fp").toFile();
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(file)))) {
+			for (long fp : sorted) out.writeLong(fp);
+		}
+		runs.add(openRun(file, sorted.length));
+		mergeTiers();
+		int capacity = Math.min(table.length, maxCapacity());
+		if (capacity<table.length) table = new long[capacity]; // the new run took its room
+		else Arrays.fill(table, EMPTY);
+		entries = 0;
+	}
+
+	/*
+	 * Returns the size tier of a run: runs of the same tier differ 
+	 * in length by less than a factor FANOUT
+	 */
+	private static int tier(long length) {
+		int log2 = 63-Long.numberOfLeadingZeros(Math.max(1, length));
+		return log2/(31-Integer.numberOfLeadingZeros(FANOUT));
+	}
+
+	/*
+	 * Merges the newest runs while FANOUT of them are in the same tier (or below).
+	 * Runs are kept from the oldest to the newest, that is from the largest to the smallest
+	 */
+	private void mergeTiers() throws IOException {
+		while (runs.size()>=FANOUT) {
+			int last = runs.size();
+			int tier = tier(runs.get(last-1).length);
+			int from = last;
+			while (from>0 && tier(runs.get(from-1).length)<=tier) from--;
+			if (last-from<FANOUT) return;
+			merge(from, last);
+		}
+	}
+
+	/*
+	 * Merges the runs in the given range in a single one, taking their place
+	 */
+	private void merge(int from, int to) throws IOException {
+		List<Run> merging = new ArrayList<>(runs.subList(from, to));
+		File merged = directory.resolve("run_"+(sequence++)+".fp").toFile();
+		List<DataInputStream> inputs = new ArrayList<>();
+		long[] heads = new long[merging.size()];
+		boolean[] done = new boolean[merging.size()];
+		long count = 0;
+		try (DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(merged)))) {
+			for (int i=0; i<merging.size(); i++) {
+				DataInputStream in = new DataInputStream(
+						new BufferedInputStream(new FileInputStream(merging.get(i).file)));
+				inputs.add(in);
+				done[i] = !next(in, heads, i);
+			}
+			while (true) {
+				int min = -1;
+				for (int i=0; i<heads.length; i++) {
+					if (!done[i] && (min<0 || heads[i]<heads[min])) min = i;
+				}
+				if (min<0) break;
+				out.writeLong(heads[min]);
+				count++;
+				done[min] = !next(inputs.get(min), heads, min);
+			}
+		} finally {
+			for (DataInputStream in : inputs) in.close();
+		}
+		for (Run run : merging) {
+			run.close();
+			runsMemory -= run.memory();
+			if (retain) retired.add(run.file);
+			else Files.deleteIfExists(run.file.toPath());
+		}
+		runs.subList(from, to).clear();
+		runs.add(from, openRun(merged, count));
+	}
+
+	private boolean next(DataInputStream in, long[] heads, int i) throws IOException {
+		try {
+			heads[i] = in.readLong();
+			return true;
+		} catch (EOFException e) {
+			return false;
+		}
+	}
+
+	/*
+	 * Builds the sparse index and the Bloom filter of a sorted run file
+	 */
+	private Run openRun(File file, long length) throws IOException {
+		long[] index = new long[(int) ((length+BLOCK-1)/BLOCK)];
+		long[] bloom = new long[(int) Math.max(1, (length*10+63)/64)];
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new FileInputStream(file)))) {
+			for (long i=0; i<length; i++) {
+				long fp = in.readLong();
+				if (i%BLOCK==0) index[(int) (i/BLOCK)] = fp;
+				addToBloom(bloom, fp);
+			}
+		}
+		Run run = new Run(file, index, bloom, length);
+		runsMemory += run.memory();
+		return run;
+	}
+
+	/*
+	 * Returns the k-th bit of a fingerprint in a Bloom filter of the given bits,
+	 * by double hashing over the whole 64-bit fingerprint
+	 */
+	private static long bloomBit(long fp, int k, long bits) {
+		long h2 = Long.rotateLeft(fp, 32) | 1L;
+		return Long.remainderUnsigned(fp+k*h2, bits);
+	}
+
+	private static void addToBloom(long[] bloom, long fp) {
+		long bits = bloom.length*64L;
+		for (int k=1; k<=7; k++) {
+			long bit = bloomBit(fp, k, bits);
+			bloom[(int) (bit >>> 6)] |= 1L << bit;
+		}
+	}
+
+	private static boolean mayContain(long[] bloom, long fp) {
+		long bits = bloom.length*64L;
+		for (int k=1; k<=7; k++) {
+			long bit = bloomBit(fp, k, bits);
+			if ((bloom[(int) (bit >>> 6)] & (1L << bit))==0) return false;
+		}
+		return true;
+	}
+
+	private static int slot(long[] table, long fp) {
+		int mask = table.length-1;
+		int i = (int) (fp ^ (fp >>> 32)) & mask;
+		while (table[i]!=EMPTY && table[i]!=fp) i = (i+1) & mask;
+		return i;
+	}
+
+}
@@ -0,0 +1,109 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import it.uniroma3.crawler.model.CrawlURL;
+
+/**
+ * A LeaseTable keeps the URLs handed out to the fetchers and not completed yet,
+ * by {@link CrawlFrontier#key(CrawlURL)}, with the deadlines of their leases
+ * scheduled on a {@link TimingWheel}.
+ * <br>
+ * A URL expires at most once for each lease: once completed, or leased again
+ * with a later deadline, its previous deadline is ignored.
+ */
+class LeaseTable {
+	private final Map<String, Lease> leases;
+	private final TimingWheel<String> expiries;
+
+	private static class Lease {
+		private final CrawlURL curl;
+		private final long deadline;
+
+		Lease(CrawlURL curl, long deadline) {
+			this.curl = curl;
+			this.deadline = deadline;
+		}
+	}
+
+	/**
+	 * @param tick the duration of a tick of the wheel in milliseconds
+	 * @param wheelSize the number of slots of the wheel
+	 * @param now the current time in milliseconds
+	 */
+	LeaseTable(long tick, int wheelSize, long now) {
+		this.leases = new LinkedHashMap<>();
+		this.expiries = new TimingWheel<>(tick, wheelSize, now);
+	}
+
+	/**
+	 * Leases a URL until the given deadline.
+	 * @param curl the URL
+	 * @param deadline the time in milliseconds, or 0 if the lease never expires
+	 * (such as for URLs recovered from the journal, which are going to be re-queued)
+	 */
+	void lease(CrawlURL curl, long deadline) {
+		String key = CrawlFrontier.key(curl);
+		leases.put(key, new Lease(curl, deadline));
+		if (deadline>0) expiries.schedule(deadline, key);
+	}
+
+	/**
+	 * Removes the lease of a URL.
+	 * @param key the key of the URL
+	 * @return the URL, or null if it was not leased
+	 */
+	CrawlURL remove(String key) {
+		Lease lease = leases.remove(key);
+		return (lease!=null) ? lease.curl : null;
+	}
+
+	/**
+	 * Removes the leases expired up to the given time.
+	 * @param now the current time in milliseconds
+	 * @return the URLs of the expired leases
+	 */
+	List<CrawlURL> expire(long now) {
+		List<CrawlURL> expired = new ArrayList<>();
+		for (String key : expiries.advance(now)) {
+			Lease lease = leases.get(key);
+			if (lease!=null && lease.deadline>0 && lease.deadline<=now) {
+				leases.remove(key);
+				expired.add(lease.curl);
+			}
+		}
+		return expired;
+	}
+
+	/**
+	 * @return the keys of the leased URLs
+	 */
+	Set<String> keys() {
+		return Collections.unmodifiableSet(leases.keySet());
+	}
+
+	/**
+	 * @return the leased URLs, in lease order
+	 */
+	List<CrawlURL> urls() {
+		Collection<Lease> values = leases.values();
+		List<CrawlURL> urls = new ArrayList<>(values.size());
+		for (Lease lease : values) urls.add(lease.curl);
+		return urls;
+	}
+
+	void clear() {
+		leases.clear();
+	}
+
+	int size() {
+		return leases.size();
+	}
+
+}
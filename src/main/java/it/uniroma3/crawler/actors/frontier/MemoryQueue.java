@@ -0,0 +1,59 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.util.List;
+
+import it.uniroma3.crawler.model.CrawlURL;
+
+/**
+ * The in-memory side of a {@link CrawlQueue}: a queue that hands out 
+ * its {@link CrawlURL} elements in priority order.
+ */
+interface MemoryQueue {
+	
+	/**
+	 * Adds the given CrawlURL to this queue
+	 * @param curl the CrawlURL
+	 */
+	void add(CrawlURL curl);
+	
+	/**
+	 * @return the top-priority CrawlURL, or null if the queue is empty
+	 */
+	CrawlURL first();
+	
+	/**
+	 * Retrieves and removes the top-priority CrawlURL
+	 * @return the top-priority CrawlURL, or null if the queue is empty
+	 */
+	CrawlURL pollFirst();
+	
+	/**
+	 * @return the PageClass priority of the top-priority CrawlURL, 
+	 * meaningless if the queue is empty
+	 */
+	int firstPriority();
+	
+	/**
+	 * Adds the given CrawlURL in place of the lowest-priority one, 
+	 * if the given CrawlURL strictly precedes it.
+	 * @param curl the CrawlURL
+	 * @return the evicted CrawlURL, or the given one if it was not added
+	 */
+	CrawlURL exchange(CrawlURL curl);
+	
+	int size();
+	
+	default boolean isEmpty() {
+		return size()==0;
+	}
+	
+	void clear();
+	
+	/**
+	 * Returns the content of this queue in priority order, as pairs of 
+	 * URL with form parameters and PageClass name.
+	 * @return the entries of this queue
+	 */
+	List<String[]> entries();
+
+}
@@ -0,0 +1,61 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A PolitenessScheduler enforces a minimum delay between two consecutive
+ * requests to the same host.
+ * <br>
+ * Each host has a next-allowed time: a request can be sent to a host only when
+ * its next-allowed time is due. Tasks waiting for a host (i.e. idle fetchers) are
+ * parked in the underlying {@link TimingWheel} until the host is due.
+ * @param <T> the type of the parked tasks
+ */
+public class PolitenessScheduler<T> extends TimingWheel<T> {
+	private final Map<String, Long> nextAllowed;
+
+	/**
+	 * Constructs a new PolitenessScheduler with the given tick duration and wheel size.
+	 * @param tick the duration of a tick in milliseconds
+	 * @param wheelSize the number of slots of the wheel, rounded up to a power of two
+	 * @param now the current time in milliseconds
+	 */
+	public PolitenessScheduler(long tick, int wheelSize, long now) {
+		super(tick, wheelSize, now);
+		this.nextAllowed = new HashMap<>();
+	}
+
+	/**
+	 * Reserves the first free slot of the given host, even if it is not due yet.
+	 * The next request to the host will be allowed after the given delay from that slot.
+	 * @param host the host
+	 * @param now the current time in milliseconds
+	 * @param delay the minimum delay before the next request to the host
+	 * @return the time in milliseconds at which the reserved request can be sent
+	 */
+	public long reserve(String host, long now, long delay) {
+		long due = Math.max(now, nextAllowed(host));
+		nextAllowed.put(host, due+delay);
+		return due;
+	}
+
+	/**
+	 * Returns the time at which the next request to the given host will be allowed.
+	 * @param host the host
+	 * @return the next-allowed time in milliseconds
+	 */
+	public long nextAllowed(String host) {
+		return nextAllowed.getOrDefault(host, Long.MIN_VALUE);
+	}
+
+	/**
+	 * Parks a task until the next-allowed time of the given host.
+	 * @param host the host
+	 * @param task the task to park
+	 */
+	public void park(String host, T task) {
+		schedule(nextAllowed(host), task);
+	}
+
+}
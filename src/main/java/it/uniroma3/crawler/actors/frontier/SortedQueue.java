@@ -0,0 +1,73 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+import it.uniroma3.crawler.model.CrawlURL;
+
+/**
+ * A {@link MemoryQueue} backed by a {@link TreeSet}: CrawlURLs are handed out 
+ * by the priority of their PageClass, as on the persistent side of the queue,
+ * then sorted by URL, with O(log n) insertions and removals.
+ */
+class SortedQueue implements MemoryQueue {
+	private final static Comparator<CrawlURL> ORDER = 
+			Comparator.comparingInt((CrawlURL curl) -> curl.getPageClass().getPriority())
+			.thenComparing(Comparator.naturalOrder());
+	private final TreeSet<CrawlURL> urls;
+	
+	SortedQueue() {
+		this.urls = new TreeSet<>(ORDER);
+	}
+
+	@Override
+	public void add(CrawlURL curl) {
+		urls.add(curl);
+	}
+
+	@Override
+	public CrawlURL first() {
+		return (!urls.isEmpty()) ? urls.first() : null;
+	}
+
+	@Override
+	public CrawlURL pollFirst() {
+		return urls.pollFirst();
+	}
+
+	@Override
+	public int firstPriority() {
+		return urls.first().getPageClass().getPriority();
+	}
+
+	@Override
+	public CrawlURL exchange(CrawlURL curl) {
+		CrawlURL last = urls.last();
+		if (ORDER.compare(curl, last)>=0) 
+			return curl;
+		urls.pollLast();
+		urls.add(curl);
+		return last;
+	}
+
+	@Override
+	public int size() {
+		return urls.size();
+	}
+
+	@Override
+	public void clear() {
+		urls.clear();
+	}
+
+	@Override
+	public List<String[]> entries() {
+		List<String[]> entries = new ArrayList<>(urls.size());
+		for (CrawlURL curl : urls)
+			entries.add(new String[]{curl.getUrlWithParameters(), curl.getPageClass().getName()});
+		return entries;
+	}
+
+}
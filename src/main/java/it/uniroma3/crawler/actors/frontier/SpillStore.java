@@ -0,0 +1,315 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import com.csvreader.CsvReader;
+import com.csvreader.CsvWriter;
+
+/**
+ * A SpillStore is the persistent side of a {@link CrawlQueue}.
+ * <br>
+ * URLs are appended to a chain of segment files, one chain for each priority bucket.
+ * Segments are never rewritten: the head segment of the best bucket is read sequentially
+ * and it is deleted as soon as it has been fully consumed.
+ * <br>
+ * Once a {@link State} has been taken, consumed segments are retired rather than deleted, 
+ * since the snapshot may still refer to them: they can be deleted 
+ * as soon as a newer snapshot has been saved.
+ */
+class SpillStore {
+	private final static int SEGMENT_SIZE = 5000;
+
+	private final Path directory;
+	private final int segmentSize;
+	private final TreeMap<Integer, Bucket> buckets;
+	private List<File> retired;
+	private boolean retain;
+	private int sequence;
+	
+	/**
+	 * The state of a SpillStore: the segments it refers to and 
+	 * how many records of each segment have already been read.
+	 */
+	static class State {
+		private final int sequence;
+		private final List<String> files;
+		private final int[] priorities, records, read;
+		
+		State(int sequence, List<String> files, int[] priorities, int[] records, int[] read) {
+			this.sequence = sequence;
+			this.files = files;
+			this.priorities = priorities;
+			this.records = records;
+			this.read = read;
+		}
+	}
+
+	/**
+	 * A segment file of a bucket chain
+	 */
+	private class Segment {
+		private final File file;
+		private int records, read;
+		private boolean sealed;
+
+		Segment(int priority) {
+			this(directory.resolve(priority+"_"+(sequence++)+".csv").toFile());
+		}
+		
+		Segment(File file) {
+			this.file = file;
+		}
+
+		boolean isConsumed() {
+			return sealed && read==records;
+		}
+	}
+
+	/**
+	 * A chain of segments of the same priority: the tail segment is the one
+	 * being written, the head segment is the one being read.
+	 */
+	private class Bucket {
+		private final int priority;
+		private final LinkedList<Segment> segments;
+		private CsvWriter writer;
+		private CsvReader reader;
+		private int size;
+
+		Bucket(int priority) {
+			this.priority = priority;
+			this.segments = new LinkedList<>();
+		}
+
+		void append(String url, String className) throws IOException {
+			if (writer==null) {
+				Files.createDirectories(directory);
+				Segment tail = new Segment(priority);
+				segments.add(tail);
+				writer = new CsvWriter(new BufferedWriter(new FileWriter(tail.file)), '\t');
+			}
+			writer.write(url);
+			writer.write(className);
+			writer.endRecord();
+			Segment tail = segments.getLast();
+			tail.records++;
+			size++;
+			if (tail.records>=segmentSize) seal();
+		}
+
+		String[] poll() throws IOException {
+			Segment head = segments.getFirst();
+			if (!head.sealed) seal();
+			if (reader==null) {
+				reader = new CsvReader(head.file.getPath(), '\t');
+				for (int i=0; i<head.read; i++) reader.skipRecord();
+			}
+			String[] record = (reader.readRecord()) ? reader.getValues() : null;
+			if (record!=null) {
+				head.read++;
+				size--;
+			}
+			else size -= head.records-head.read; // truncated segment
+			if (record==null || head.isConsumed()) {
+				reader.close();
+				reader = null;
+				segments.removeFirst();
+				discard(head.file);
+			}
+			return record;
+		}
+
+		void seal() throws IOException {
+			if (writer!=null) {
+				writer.flush();
+				writer.close();
+				writer = null;
+			}
+			if (!segments.isEmpty()) segments.getLast().sealed = true;
+		}
+
+		void close() {
+			if (writer!=null) writer.close();
+			if (reader!=null) reader.close();
+			writer = null;
+			reader = null;
+		}
+	}
+
+	/**
+	 * Constructs a new SpillStore whose segments are stored in the given directory.
+	 * @param directory the directory of the segment files
+	 */
+	SpillStore(String directory) {
+		this(directory, SEGMENT_SIZE);
+	}
+
+	/**
+	 * Constructs a new SpillStore whose segments are stored in the given directory
+	 * and hold at most the given number of records.
+	 * @param directory the directory of the segment files
+	 * @param segmentSize the max number of records of a segment
+	 */
+	SpillStore(String directory, int segmentSize) {
+		this.directory = Paths.get(directory);
+		this.segmentSize = segmentSize;
+		this.buckets = new TreeMap<>();
+		this.retired = new ArrayList<>();
+	}
+
+	/**
+	 * Appends a URL to the tail segment of the bucket of the given priority.
+	 * @param priority the priority of the URL, lower is better
+	 * @param url the URL
+	 * @param className the PageClass name of the URL
+	 * @throws IOException if the segment cannot be written
+	 */
+	void append(int priority, String url, String className) throws IOException {
+		buckets.computeIfAbsent(priority, Bucket::new).append(url, className);
+	}
+
+	/**
+	 * Reads at most the given number of records from the head segments of
+	 * the best non-empty bucket.
+	 * @param quantity the max number of records to read
+	 * @return the records (URL, PageClass name) read
+	 * @throws IOException if a segment cannot be read
+	 */
+	List<String[]> poll(int quantity) throws IOException {
+		List<String[]> records = new ArrayList<>();
+		Map.Entry<Integer, Bucket> best = bestBucket();
+		if (best!=null) {
+			Bucket bucket = best.getValue();
+			while (records.size()<quantity && bucket.size>0) {
+				String[] record = bucket.poll();
+				if (record!=null) records.add(record);
+			}
+		}
+		return records;
+	}
+
+	/**
+	 * Returns the priority of the best non-empty bucket.
+	 * @return the best priority, or {@link Integer#MAX_VALUE} if this store is empty
+	 */
+	int bestPriority() {
+		Map.Entry<Integer, Bucket> best = bestBucket();
+		return (best!=null) ? best.getKey() : Integer.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the number of records that are still to be read.
+	 * @return the size of this store
+	 */
+	int size() {
+		return buckets.values().stream().mapToInt(b -> b.size).sum();
+	}
+
+	/**
+	 * Closes any open segment and deletes the directory of this store.
+	 * @return true if the directory was deleted, false otherwise
+	 * @throws IOException if an IO error occurs
+	 */
+	boolean delete() throws IOException {
+		buckets.values().forEach(Bucket::close);
+		buckets.clear();
+		retired.clear();
+		retain = false;
+		if (!Files.exists(directory)) return false;
+		Files.walk(directory)
+		.sorted(Comparator.reverseOrder())
+		.map(Path::toFile)
+		.forEach(File::delete);
+		return true;
+	}
+
+	/**
+	 * Seals the tail segments and returns the current state of this store.
+	 * <br>
+	 * From now on, consumed segments are retired instead of being deleted.
+	 * @return the state of this store
+	 * @throws IOException if a tail segment cannot be flushed
+	 */
+	State snapshot() throws IOException {
+		List<String> files = new ArrayList<>();
+		List<int[]> refs = new ArrayList<>();
+		for (Bucket bucket : buckets.values()) {
+			bucket.seal();
+			for (Segment segment : bucket.segments) {
+				files.add(segment.file.getName());
+				refs.add(new int[]{bucket.priority, segment.records, segment.read});
+			}
+		}
+		retain = true;
+		return new State(sequence, files, 
+				refs.stream().mapToInt(r -> r[0]).toArray(), 
+				refs.stream().mapToInt(r -> r[1]).toArray(), 
+				refs.stream().mapToInt(r -> r[2]).toArray());
+	}
+	
+	/**
+	 * Replaces the content of this store with the given state.
+	 * <br>
+	 * Segments the state does not refer to are deleted.
+	 * @param state the state to restore
+	 * @throws IOException if the directory of this store cannot be read
+	 */
+	void restore(State state) throws IOException {
+		buckets.values().forEach(Bucket::close);
+		buckets.clear();
+		sequence = state.sequence;
+		retain = true;
+		for (int i=0; i<state.files.size(); i++) {
+			Bucket bucket = buckets.computeIfAbsent(state.priorities[i], Bucket::new);
+			Segment segment = new Segment(directory.resolve(state.files.get(i)).toFile());
+			segment.records = state.records[i];
+			segment.read = state.read[i];
+			segment.sealed = true;
+			bucket.segments.add(segment);
+			bucket.size += segment.records-segment.read;
+		}
+		if (Files.exists(directory)) {
+			try (Stream<Path> files = Files.list(directory)) {
+				files.filter(f -> !state.files.contains(f.getFileName().toString()))
+				.map(Path::toFile)
+				.forEach(File::delete);
+			}
+		}
+	}
+	
+	/**
+	 * Returns the segments retired since the last call, 
+	 * that is the consumed segments that a snapshot may still refer to.
+	 * @return the retired segment files
+	 */
+	List<File> retired() {
+		List<File> files = retired;
+		retired = new ArrayList<>();
+		return files;
+	}
+	
+	private void discard(File file) throws IOException {
+		if (retain) retired.add(file);
+		else Files.deleteIfExists(file.toPath());
+	}
+
+	private Map.Entry<Integer, Bucket> bestBucket() {
+		return buckets.entrySet().stream()
+				.filter(e -> e.getValue().size>0)
+				.findFirst().orElse(null);
+	}
+
+}
@@ -0,0 +1,99 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * A TimingWheel is a hashed timing wheel of tasks to be run at a given time.
+ * <br>
+ * Tasks are hashed into the slots of the wheel by their deadline, and the slots are
+ * visited by a single periodic tick, so that no timer is needed for each task.
+ * @param <T> the type of the scheduled tasks
+ */
+public class TimingWheel<T> {
+	private final long tick;
+	private final int mask;
+	private final List<LinkedList<Timeout>> wheel;
+	private final long start;
+	private long currentTick;
+	private int size;
+
+	/**
+	 * A task in the wheel, with the number of
+	 * full rounds of the wheel it still has to wait
+	 */
+	private class Timeout {
+		private final T task;
+		private long rounds;
+
+		Timeout(T task, long rounds) {
+			this.task = task;
+			this.rounds = rounds;
+		}
+	}
+
+	/**
+	 * Constructs a new TimingWheel with the given tick duration and wheel size.
+	 * @param tick the duration of a tick in milliseconds
+	 * @param wheelSize the number of slots of the wheel, rounded up to a power of two
+	 * @param now the current time in milliseconds
+	 */
+	public TimingWheel(long tick, int wheelSize, long now) {
+		int slots = Integer.highestOneBit(Math.max(1, wheelSize-1) << 1);
+		this.tick = tick;
+		this.mask = slots-1;
+		this.wheel = new ArrayList<>(slots);
+		for (int i=0; i<slots; i++) wheel.add(new LinkedList<>());
+		this.start = now;
+		this.currentTick = 0;
+	}
+
+	/**
+	 * Schedules a task at the given time.
+	 * @param deadline the time in milliseconds
+	 * @param task the task to schedule
+	 */
+	public void schedule(long deadline, T task) {
+		long deadlineTick = (deadline-start+tick-1)/tick;
+		long ticks = Math.max(deadlineTick, currentTick);
+		int slot = (int) (ticks & mask);
+		wheel.get(slot).add(new Timeout(task, (ticks-currentTick)/wheel.size()));
+		size++;
+	}
+
+	/**
+	 * Advances the wheel up to the given time.
+	 * @param now the current time in milliseconds
+	 * @return the tasks whose deadline is due, in deadline order
+	 */
+	public List<T> advance(long now) {
+		List<T> due = new ArrayList<>();
+		long nowTick = (now-start)/tick;
+		while (currentTick<=nowTick && size>0) {
+			Iterator<Timeout> slot = wheel.get((int) (currentTick & mask)).iterator();
+			while (slot.hasNext()) {
+				Timeout timeout = slot.next();
+				if (timeout.rounds<=0) {
+					due.add(timeout.task);
+					slot.remove();
+					size--;
+				}
+				else timeout.rounds--;
+			}
+			currentTick++;
+		}
+		if (size==0) currentTick = Math.max(currentTick, nowTick+1);
+		return due;
+	}
+
+	/**
+	 * Returns the number of scheduled tasks.
+	 * @return the number of scheduled tasks
+	 */
+	public int size() {
+		return size;
+	}
+
+}
@@ -23,8 +23,14 @@ public class CrawlURLFactory {
 		return factory.create(url, pClass);
 	}
 	
+	/**
+	 * Returns a new CrawlURL with the same URL, form parameters and PageClass
+	 * of the given one, without its out links and record.
+	 * @param curl the CrawlURL to copy
+	 * @return the copy
+	 */
 	public static CrawlURL copy(CrawlURL curl) {
-		return factory.create(curl.getUrl(), curl.getPageClass());
+		return factory.create(curl.getUrlWithParameters(), curl.getPageClass());
 	}
 	
 	private CrawlURL create(String url, PageClass pClass) {
@@ -13,6 +13,10 @@ public class FetchMsg {
 	private final String domain;
 	private final int id;
 	private final boolean js;
+	private final boolean raw;
+	private final boolean assets;
+	private final ExtractLinksMsg links;
+	private final ExtractDataMsg data;
 		
 	public FetchMsg(String url, String pclass, String domain, int id, boolean js) {
 		this.url = url;
@@ -22,10 +26,24 @@ public class FetchMsg {
 		this.domain = domain;
 		this.id = id;
 		this.js = js;
+		this.raw = false;
+		this.assets = true;
+		this.links = null;
+		this.data = null;
 	}
 	
 	public FetchMsg(String url, String form, 
 			List<NameValuePair> params, String pclass, String domain, int id, boolean js) {
+		this(url, form, params, pclass, domain, id, js, false);
+	}
+	
+	public FetchMsg(String url, String form, List<NameValuePair> params, 
+			String pclass, String domain, int id, boolean js, boolean raw) {
+		this(url, form, params, pclass, domain, id, js, raw, true);
+	}
+	
+	public FetchMsg(String url, String form, List<NameValuePair> params, 
+			String pclass, String domain, int id, boolean js, boolean raw, boolean assets) {
 		this.url = url;
 		this.form = form;
 		this.params = params;
@@ -33,6 +51,31 @@ public class FetchMsg {
 		this.domain = domain;
 		this.id = id;
 		this.js = js;
+		this.raw = raw;
+		this.assets = assets;
+		this.links = null;
+		this.data = null;
+	}
+	
+	/**
+	 * Copies the given FetchMsg, adding the extractions to perform 
+	 * on the page as soon as it is downloaded.
+	 * @param msg the FetchMsg to copy
+	 * @param links the outgoing links to extract, or null
+	 * @param data the data to extract, or null
+	 */
+	public FetchMsg(FetchMsg msg, ExtractLinksMsg links, ExtractDataMsg data) {
+		this.url = msg.url;
+		this.form = msg.form;
+		this.params = msg.params;
+		this.pclass = msg.pclass;
+		this.domain = msg.domain;
+		this.id = msg.id;
+		this.js = msg.js;
+		this.raw = msg.raw;
+		this.assets = msg.assets;
+		this.links = links;
+		this.data = data;
 	}
 	
 	public int getId() {
@@ -62,5 +105,36 @@ public class FetchMsg {
 	public boolean useJavaScript() {
 		return js;
 	}
+	
+	/**
+	 * @return true if the page can be downloaded as raw bytes: 
+	 * no JavaScript, no form to submit
+	 */
+	public boolean useRawFetch() {
+		return raw && !js && form==null && params.isEmpty();
+	}
+	
+	/**
+	 * @return true if the images of the page must be stored
+	 */
+	public boolean saveAssets() {
+		return assets;
+	}
+	
+	public ExtractLinksMsg getLinksRequest() {
+		return links;
+	}
+	
+	public ExtractDataMsg getDataRequest() {
+		return data;
+	}
+	
+	/**
+	 * @return true if links and data are to be extracted from 
+	 * the page in memory, right after it is downloaded
+	 */
+	public boolean isPipelined() {
+		return links!=null || data!=null;
+	}
 
 }
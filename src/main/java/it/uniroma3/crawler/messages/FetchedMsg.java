@@ -1,18 +1,32 @@
 package it.uniroma3.crawler.messages;
 
+import java.util.List;
+import java.util.Map;
+
 public class FetchedMsg {
 	
 	private final int response;
 	private final String url;
+	private final Map<String, List<String>> outLinks;
+	private final List<String> record;
 
 	public FetchedMsg(int response) {
-		this.response = response;
-		this.url = null;
+		this(null, response);
 	}
 	
 	public FetchedMsg(String url, int response) {
 		this.response = response;
 		this.url = url;
+		this.outLinks = null;
+		this.record = null;
+	}
+	
+	public FetchedMsg(String url, int response, Map<String, List<String>> outLinks, 
+			List<String> record) {
+		this.response = response;
+		this.url = url;
+		this.outLinks = outLinks;
+		this.record = record;
 	}
 	
 	public int getResponse() {
@@ -22,5 +36,22 @@ public class FetchedMsg {
 	public String getUrl() {
 		return url;
 	}
+	
+	public Map<String, List<String>> getLinks() {
+		return outLinks;
+	}
+	
+	public List<String> getRecord() {
+		return record;
+	}
+	
+	/**
+	 * @return true if links and data were already extracted from the page,
+	 * false if they were not requested, the extraction failed or the page 
+	 * could not be stored
+	 */
+	public boolean isExtracted() {
+		return outLinks!=null;
+	}
 
 }
@@ -0,0 +1,24 @@
+package it.uniroma3.crawler.messages;
+
+import java.util.List;
+
+import it.uniroma3.crawler.model.CrawlURL;
+
+public class LeaseMsg {
+	private final List<CrawlURL> urls;
+	private final long[] delays;
+	
+	public LeaseMsg(List<CrawlURL> urls, long[] delays) {
+		this.urls = urls;
+		this.delays = delays;
+	}
+	
+	public List<CrawlURL> getURLs() {
+		return urls;
+	}
+	
+	public long getDelay(int i) {
+		return delays[i];
+	}
+
+}
@@ -0,0 +1,30 @@
+package it.uniroma3.crawler.messages;
+
+/**
+ * A request about a URL to the repository, along with the id 
+ * the sender will use to match its {@link ResponseMsg}.
+ */
+public class RequestMsg {
+	private final long id;
+	private final String url;
+	private final Object request;
+	
+	public RequestMsg(long id, String url, Object request) {
+		this.id = id;
+		this.url = url;
+		this.request = request;
+	}
+	
+	public long getId() {
+		return id;
+	}
+	
+	public String getUrl() {
+		return url;
+	}
+	
+	public Object getRequest() {
+		return request;
+	}
+
+}
@@ -0,0 +1,23 @@
+package it.uniroma3.crawler.messages;
+
+/**
+ * The response to the {@link RequestMsg} with the same id.
+ */
+public class ResponseMsg {
+	private final long id;
+	private final Object response;
+	
+	public ResponseMsg(long id, Object response) {
+		this.id = id;
+		this.response = response;
+	}
+	
+	public long getId() {
+		return id;
+	}
+	
+	public Object getResponse() {
+		return response;
+	}
+
+}
@@ -6,6 +6,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -17,7 +18,7 @@ public class CrawlURL implements Comparable<CrawlURL> {
 	private URI url;
 	private String formParameters;
 	private PageClass pageClass;
-	private Map<String, String> outLinks;
+	private Map<String, String> outLinks; // allocated by the first extracted link
 	private String[] record;
 	
 	public CrawlURL(String url, PageClass pageClass) throws URISyntaxException {
@@ -32,7 +33,6 @@ public class CrawlURL implements Comparable<CrawlURL> {
 	public CrawlURL(URI uri, PageClass pageClass) {
 		this.url = uri;
 		this.pageClass = pageClass;
-		this.outLinks = new HashMap<>();
 	}
 	
 	public URI getUrl() {
@@ -43,6 +43,15 @@ public class CrawlURL implements Comparable<CrawlURL> {
 		return url.toString();
 	}
 	
+	/**
+	 * Returns this URL as a String, followed by its form parameters if any,
+	 * so that it can be turned back into a CrawlURL by the CrawlURLFactory.
+	 * @return the URL with its form parameters
+	 */
+	public String getUrlWithParameters() {
+		return url.toString()+formatFormParameters();
+	}
+	
 	public List<NameValuePair> getFormParameters() {
 		List<NameValuePair> pairs = new ArrayList<>();
 		if (formParameters!=null) {
@@ -64,15 +73,17 @@ public class CrawlURL implements Comparable<CrawlURL> {
 	}
 
 	public void addOutLink(String link, String pClass) {
+		if (outLinks==null) outLinks = new HashMap<>();
 		this.outLinks.putIfAbsent(link, pClass);
 	}
 	
 	public Set<String> getOutLinks() {
+		if (outLinks==null) return new HashSet<>();
 		return outLinks.keySet().stream().collect(toSet());
 	}
 	
 	public String getOutLinkPageClass(String link) {
-		return outLinks.get(link);
+		return (outLinks!=null) ? outLinks.get(link) : null;
 	}
 	
 	public void setRecord(String[] record) {
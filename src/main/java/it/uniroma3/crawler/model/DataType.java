@@ -1,9 +1,14 @@
 package it.uniroma3.crawler.model;
 
+import java.util.List;
+
 import org.neo4j.ogm.annotation.NodeEntity;
 
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 
+import it.uniroma3.crawler.util.CompactDom;
+import it.uniroma3.crawler.util.XPathUtils;
+
 @NodeEntity
 public abstract class DataType {
 	private Long id;
@@ -33,6 +38,27 @@ public abstract class DataType {
 	 * @param xpath
 	 * @return the String record
 	 */
-	public abstract String extract(HtmlPage page, String xpath);
+	public String extract(HtmlPage page, String xpath) {
+		return extract(XPathUtils.getByXPath(page, xpath));
+	}
+	
+	/**
+	 * Extracts the expected value type from the nodes matched by its XPath
+	 * @param nodes the matching nodes, in document order
+	 * @return the String record
+	 */
+	public abstract String extract(List<?> nodes);
+	
+	/**
+	 * Extracts the expected value type from the nodes of a {@link CompactDom}
+	 * matched by its XPath
+	 * @param dom the DOM of the page
+	 * @param nodes the matching nodes, in document order
+	 * @return the String record, or null if the value can only be extracted 
+	 * from an {@link HtmlPage}
+	 */
+	public String extract(CompactDom dom, int[] nodes) {
+		return null;
+	}
 	
 }
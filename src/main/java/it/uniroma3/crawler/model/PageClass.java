@@ -2,6 +2,9 @@ package it.uniroma3.crawler.model;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -33,10 +36,14 @@ public class PageClass implements Comparable<PageClass> {
 	private String website;
 	private int depth;
 	
+	@Transient private int priority;
+	@Transient private int distance;
 	@Transient private int waitTime;
 	@Transient private int randomPause;
 	@Transient private int maxFetchTries;
 	@Transient private boolean javascript;
+	@Transient private boolean rawFetch;
+	@Transient private boolean skipAssets;
 	@Transient private SortedSet<PageClass> descendants;
 	@Transient private String modelClassification;
 	
@@ -62,6 +69,8 @@ public class PageClass implements Comparable<PageClass> {
 		this.randomPause = conf.randompause;
 		this.maxFetchTries = conf.maxfailures;
 		this.javascript = conf.javascript;
+		this.rawFetch = conf.rawfetch;
+		this.skipAssets = conf.skipassets.contains(name);
 	}
 	
 	public PageClass(String name, String website) {
@@ -142,10 +151,44 @@ public class PageClass implements Comparable<PageClass> {
 		return this.depth;
 	}
 
+	/**
+	 * Returns the rank of this PageClass among the descendants of its root,
+	 * as set by {@link #setHierarchy()}: 0 for the root, then by depth and name.
+	 * A focused crawling ranks the descendants by their distance from the targets first.
+	 * @return the crawling priority of this PageClass, lower is first
+	 */
+	public int getPriority() {
+		return this.priority;
+	}
+
+	/**
+	 * Returns false if no target PageClass can be reached from this PageClass, 
+	 * once the crawling has been focused with {@link #setTargets(Collection)}.
+	 * @return true if the pages of this PageClass must be crawled
+	 */
+	public boolean isRelevant() {
+		return this.distance>=0;
+	}
+
 	public boolean useJavaScript() {
 		return javascript;
 	}
 	
+	/**
+	 * @return true if the pages of this PageClass can be downloaded as raw bytes,
+	 * with no browser emulation
+	 */
+	public boolean useRawFetch() {
+		return rawFetch && !javascript;
+	}
+	
+	/**
+	 * @return true if the images of the pages of this PageClass must be stored
+	 */
+	public boolean saveAssets() {
+		return !skipAssets;
+	}
+	
 	public int maxTries() {
 		return maxFetchTries;
 	}
@@ -197,6 +240,43 @@ public class PageClass implements Comparable<PageClass> {
 			.forEach(p -> {p.setDepth(current.getDepth()+1); queue.add(p);});
 		}
 		this.descendants.addAll(name2class.values());
+		int rank = 0;
+		for (PageClass pclass : descendants)
+			pclass.priority = rank++;
+	}
+	
+	/**
+	 * Focuses the crawling of this root PageClass on the given target PageClasses.
+	 * <br>
+	 * The distance of each descendant from the nearest target is computed over the 
+	 * reversed class links: descendants that cannot reach any target are no longer 
+	 * {@link #isRelevant() relevant}, while the priorities of the others are 
+	 * ranked by distance first, so that the crawler heads for the targets.
+	 * Must be called after {@link #setHierarchy()}; no target means no focus.
+	 * @param targets the names of the target PageClasses
+	 */
+	public void setTargets(Collection<String> targets) {
+		if (targets.isEmpty()) return;
+		Map<PageClass,List<PageClass>> sources = new HashMap<>();
+		Queue<PageClass> queue = new LinkedList<>();
+		for (PageClass pclass : descendants) {
+			pclass.distance = (targets.contains(pclass.getName())) ? 0 : -1;
+			if (pclass.distance==0) queue.add(pclass);
+			pclass.getAllLinks().forEach(l -> 
+				sources.computeIfAbsent(l.getDestination(), d -> new ArrayList<>()).add(pclass));
+		}
+		while (!queue.isEmpty()) {
+			PageClass current = queue.poll();
+			sources.getOrDefault(current, Collections.emptyList()).stream()
+			.filter(p -> p.distance<0)
+			.forEach(p -> {p.distance = current.distance+1; queue.add(p);});
+		}
+		List<PageClass> ranked = descendants.stream()
+				.sorted(Comparator.comparingInt(p -> (p.distance<0) ? Integer.MAX_VALUE : p.distance))
+				.collect(toList());
+		int rank = 0;
+		for (PageClass pclass : ranked)
+			pclass.priority = rank++;
 	}
 	
 	public void setMenusTypes() {
@@ -1,19 +1,31 @@
 package it.uniroma3.crawler.model;
 
-import org.neo4j.ogm.annotation.NodeEntity;
+import java.util.ArrayList;
+import java.util.List;
 
-import com.gargoylesoftware.htmlunit.html.HtmlPage;
+import org.neo4j.ogm.annotation.NodeEntity;
 
+import it.uniroma3.crawler.util.CompactDom;
 import it.uniroma3.crawler.util.XPathUtils;
 
 @NodeEntity(label="string")
 public class StringDataType extends DataType {
 	
 	@Override
-	public String extract(HtmlPage page, String xpath) {
-		String extracted = XPathUtils.extractByXPath(page, xpath);
+	public String extract(List<?> nodes) {
+		String extracted = XPathUtils.extractStringValue(nodes, null);
 		if (extracted != null) return extracted.replaceAll("\"", "");
 		return "";
 	}
+	
+	@Override
+	public String extract(CompactDom dom, int[] nodes) {
+		List<String> texts = new ArrayList<>();
+		for (int node : nodes) {
+			if (!dom.isText(node)) return null;
+			texts.add(dom.getText(node));
+		}
+		return extract(texts);
+	}
 
 }
@@ -5,17 +5,25 @@ import java.util.List;
 import org.neo4j.ogm.annotation.NodeEntity;
 
 import com.gargoylesoftware.htmlunit.html.HtmlAnchor;
-import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+import it.uniroma3.crawler.util.CompactDom;
 
 @NodeEntity(label="url")
 public class UrlDataType extends DataType {
 
 	@Override
-	public String extract(HtmlPage page, String xpath) {
-		final List<?> nodes = page.getByXPath(xpath);
+	public String extract(List<?> nodes) {
 		if (nodes.isEmpty()) return "";
 		HtmlAnchor targetSite = (HtmlAnchor) nodes.get(0);
 		return targetSite.getHrefAttribute();
 	}
+	
+	@Override
+	public String extract(CompactDom dom, int[] nodes) {
+		if (nodes.length==0) return "";
+		if (!"a".equals(dom.getTagName(nodes[0]))) return null;
+		String href = dom.getAttribute(nodes[0], "href");
+		return (href!=null) ? href : "";
+	}
 
 }
@@ -9,6 +9,7 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 import akka.actor.AbstractLoggingActor;
 import akka.actor.ActorRef;
@@ -29,6 +30,7 @@ public class CrawlModeler extends AbstractLoggingActor {
 	private boolean crawl;
 	private int children;
 	private String goldenModel;
+	private List<String> targets;
 
 	@Override
 	public Receive createReceive() {
@@ -45,6 +47,7 @@ public class CrawlModeler extends AbstractLoggingActor {
 		String addr = msg.getAddress();
 		crawl = conf.crawl;
 		goldenModel = conf.goldenModel;
+		targets = conf.targets;
 		if (conf.modelPages>0) {
 			ActorRef dynamic = dynamicModeler(conf, addr);
 			context().watch(dynamic);
@@ -59,7 +62,10 @@ public class CrawlModeler extends AbstractLoggingActor {
 	}
 	
 	private void sendAndSave(PageClass root) {
-		if (crawl) context().parent().tell(root, self());
+		if (crawl) {
+			focus(root);
+			context().parent().tell(root, self());
+		}
 		if (sender().path().name().equals("dynamic")) {
 			ActorRef service = context().actorOf(Props.create(ModelerService.class),"service");
 			context().watch(service);
@@ -104,6 +110,18 @@ public class CrawlModeler extends AbstractLoggingActor {
 		stopChild(sender());
     }
     
+    /*
+     * Restricts the crawling to the paths leading to the target classes, if any
+     */
+    private void focus(PageClass root) {
+    	if (targets.isEmpty()) return;
+    	root.setTargets(targets);
+    	if (!root.isRelevant())
+    		log().warning("No target class "+targets+" can be reached from the root: nothing to crawl");
+    	else
+    		log().info("Focused crawling on "+targets);
+    }
+    
     private void stopChild(ActorRef ref) {
     	context().unwatch(ref);
 		context().stop(ref);
@@ -40,6 +40,7 @@ import it.uniroma3.crawler.modeler.util.ModelCostCalculator;
 import static it.uniroma3.crawler.modeler.util.ModelCostCalculator.distance;
 import static it.uniroma3.crawler.modeler.util.ModelCostCalculator.distanceLinks;
 import it.uniroma3.crawler.settings.CrawlerSettings.SeedConfig;
+import it.uniroma3.crawler.util.CompiledXPath;
 import it.uniroma3.crawler.util.FileUtils;
 import it.uniroma3.crawler.util.HtmlUtils;
 import scala.concurrent.duration.Duration;
@@ -341,6 +342,8 @@ public class DynamicModeler extends AbstractLoggingActor {
 			page.addMenuLink(xpath, newPages);
 		else if (collection.isSingleton()) {
 			String text;			
+			/* the text as HtmlUnit reads it: the DOM of the page is 
+			 * a re-serialization, whose whitespace may differ */
 			try { text = getAnchorText(restorePage(page), xpath); }
 			catch (Exception e) { text = ""; }
 			page.addSingleLink(xpath, text, newPages);
@@ -361,9 +364,16 @@ public class DynamicModeler extends AbstractLoggingActor {
 		boolean found = false;
 
 		try {
-			HtmlPage html = restorePage(page);
+			HtmlPage html = null; // only for XPaths out of the compiled dialect
 			while (!found && xp.refine(finer)) {
-				List<String> links = getRelativeURLs(html, xp.get());
+				String xpath = xp.get();
+				List<String> links;
+				if (CompiledXPath.get(xpath)!=null)
+					links = getRelativeURLs(page.getDom(), xpath);
+				else {
+					if (html==null) html = restorePage(page);
+					links = getRelativeURLs(html, xpath);
+				}
 				long size = links.stream().distinct().count();
 				if (!links.equals(collection.getLinks()) && size<page.urlsSize()) {
 					collection.setLinks(links);
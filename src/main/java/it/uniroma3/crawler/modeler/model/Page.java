@@ -11,9 +11,11 @@ import java.util.logging.Logger;
 import com.gargoylesoftware.htmlunit.html.HtmlPage;
 
 import it.uniroma3.crawler.model.PageClass;
+import it.uniroma3.crawler.util.CompactDom;
+import it.uniroma3.crawler.util.CompiledXPath;
+import it.uniroma3.crawler.util.XPathPlan;
 
-import static it.uniroma3.crawler.util.XPathUtils.getUniqueByXPath;
-import static it.uniroma3.crawler.util.XPathUtils.getTexts;
+import static it.uniroma3.crawler.util.XPathUtils.getUniqueTexts;
 import static it.uniroma3.crawler.util.XPathUtils.getRelativeURLs;
 import static java.util.stream.Collectors.toList;
 import static java.util.stream.Collectors.toSet;
@@ -25,13 +27,18 @@ import java.util.HashSet;
 /**
  * A Page is a web page represented as a subset of the XPaths-to-link in the corresponding 
  * DOM tree representation, along with the referenced URLs themselves.
- *
+ * <br>
+ * The DOM of the page is kept as a {@link CompactDom}, 
+ * to evaluate new versions of its XPaths without parsing the page again:
+ * it is built from the document serialized by HtmlUnit, so that it has the same 
+ * structure, but not the same whitespace, and it holds that whole document in memory.
  */
 public class Page {
 	private String url;
 	private String title;
 	private String href;
 	private String tempFile;
+	private final CompactDom dom;
 	private Set<LinkCollection> linkCollections;
 	private final Map<XPath,Set<String>> textCollections;
 	private int urlsSize;
@@ -47,6 +54,7 @@ public class Page {
 	public Page(String url, HtmlPage html) {
 		this.url = url;
 		this.title = html.getTitleText();
+		this.dom = CompactDom.parse(html.asXml());
 		this.linkCollections = pageSchema(html);
 		this.textCollections = labelsSchema(html,60);
 		this.links = new ArrayList<>();
@@ -72,6 +80,15 @@ public class Page {
 		this.href = href;
 	}
 	
+	/**
+	 * Returns the DOM of this page, as built by HtmlUnit 
+	 * (including the changes made by JavaScript, if enabled).
+	 * @return the DOM
+	 */
+	public CompactDom getDom() {
+		return dom;
+	}
+	
 	/**
 	 * 
 	 * @return the file path where this page has been saved, if any
@@ -157,13 +174,25 @@ public class Page {
 	/*
 	 * INTERNAL API 
 	 * Groups outgoing URLs by XPaths-to-link to build the page schema.
+	 * The XPaths of the anchors are evaluated together in a single pass over the DOM.
 	 */
 	private Set<LinkCollection> pageSchema(HtmlPage html) {
 		Set<LinkCollection> collections = new HashSet<>();
-		Set<XPath> xpaths = html.getAnchors().stream().map(XPath::new).collect(toSet());
-		for (XPath xp : xpaths) {
+		Map<String,XPath> xpaths = new HashMap<>(); // by default version
+		for (int n=0; n<dom.size(); n++) {
+			if ("a".equals(dom.getTagName(n))) {
+				XPath xp = new XPath(dom, n);
+				xpaths.putIfAbsent(xp.getDefault(), xp);
+			}
+		}
+		List<String> compiled = xpaths.keySet().stream()
+				.filter(xp -> CompiledXPath.get(xp)!=null).collect(toList());
+		Map<String,int[]> matches = new XPathPlan(compiled).evaluate(dom);
+		for (XPath xp : xpaths.values()) {
 			try {
-				List<String> urls = getRelativeURLs(html,xp.getDefault());
+				String path = xp.getDefault();
+				List<String> urls = (matches.containsKey(path)) ? 
+						getRelativeURLs(dom,matches.get(path)) : getRelativeURLs(html,path);
 				LinkCollection lc = new LinkCollection(this,xp,urls);
 				collections.add(lc);
 			} catch (Exception e) {
@@ -175,13 +204,13 @@ public class Page {
 	}
 	
 	/*
-	 * Groups nodes containing single and unique strings in XPath-to-nodes
+	 * Groups nodes containing single and unique strings in XPath-to-nodes,
+	 * in a single traversal of the page
 	 */
 	private Map<XPath,Set<String>> labelsSchema(HtmlPage html, int limit) {
 		Map<XPath,Set<String>> xp2text = new HashMap<>();		
-		getTexts(html,limit).forEach(w -> 
-			getUniqueByXPath(html,"//*[normalize-space(text())='"+w+"']").map(XPath::new)
-			.ifPresent(xp -> xp2text.computeIfAbsent(xp, k->new HashSet<>()).add(w)));
+		getUniqueTexts(html,limit).forEach((w, node) -> 
+			xp2text.computeIfAbsent(new XPath(node), k->new HashSet<>()).add(w));
 		return xp2text;
 	}
 	
@@ -9,6 +9,8 @@ import org.w3c.dom.Node;
 
 import com.gargoylesoftware.htmlunit.html.DomNode;
 
+import it.uniroma3.crawler.util.CompactDom;
+
 /**
  * The XPath class represents a Root-to-link or Root-to-text path that matches nodes 
  * in a webpage. Every XPath stores a list of {@link XPathTag} 
@@ -62,6 +64,18 @@ public class XPath {
 		defaultPath = get();
 	}
 	
+	/**
+	 * Creates a new XPath matching the given node of a {@link CompactDom}, 
+	 * as {@link XPath#XPath(DomNode)} does for the same node of an HtmlPage.
+	 * @param dom the DOM
+	 * @param node the node to create a Root-to-node path
+	 */
+	public XPath(CompactDom dom, int node) {
+		build(dom, node);
+		path = "";
+		defaultPath = get();
+	}
+	
 	/**
 	 * Creates a new XPath that is a copy of the given one.
 	 * @param xpath the XPath to copy
@@ -203,25 +217,52 @@ public class XPath {
 			int n = attrs.getLength();
 			for (int i=0; i<=n-1; i++) {
 				Node attr = attrs.item(i);
-				String name = attr.getNodeName();
-				if (index>0 || (!name.equals("href") && !name.contains(":")))
-					tag.addAttribute(name, attr.getNodeValue());
+				addAttribute(tag, attr.getNodeName(), attr.getNodeValue());
 			}
-			if (!idFound) {
-				if (tag.hasId()) {
-					tag.setId();
-					idFound = true;
-				}
-				else if (index==0) tag.setAllAttributes();
-				else tag.setFirstAttribute();
-			} 
-			//else tag.setUse(false); // always use all tags (?)
-			tags.add(tag);
+			idFound = addTag(tag, idFound);
 			node = node.getParentNode();
 			index++;
 		}
 	}
 	
+	private void build(CompactDom dom, int node) {
+		tags = new TreeSet<>();
+		int index=0;
+		boolean idFound = false;
+		while (node!=CompactDom.DOCUMENT) {
+			String name = (dom.isText(node)) ? "#text" : dom.getTagName(node);
+			XPathTag tag = new XPathTag(name,index);
+			int n = (dom.isText(node)) ? 0 : dom.getAttributeCount(node);
+			for (int i=0; i<=n-1; i++)
+				addAttribute(tag, dom.getAttributeName(node, i), dom.getAttributeValue(node, i));
+			idFound = addTag(tag, idFound);
+			node = dom.getParent(node);
+			index++;
+		}
+	}
+	
+	private void addAttribute(XPathTag tag, String name, String value) {
+		if (tag.getIndex()>0 || (!name.equals("href") && !name.contains(":")))
+			tag.addAttribute(name, value);
+	}
+	
+	/*
+	 * Adds the tag to the path, returning true if a tag with an id was found
+	 */
+	private boolean addTag(XPathTag tag, boolean idFound) {
+		if (!idFound) {
+			if (tag.hasId()) {
+				tag.setId();
+				idFound = true;
+			}
+			else if (tag.getIndex()==0) tag.setAllAttributes();
+			else tag.setFirstAttribute();
+		} 
+		//else tag.setUse(false); // always use all tags (?)
+		tags.add(tag);
+		return idFound;
+	}
+	
 	@Override
 	public String toString() {
 		return get();
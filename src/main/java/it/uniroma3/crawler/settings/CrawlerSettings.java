@@ -4,6 +4,7 @@ import akka.actor.Extension;
 
 import static java.util.stream.Collectors.toList;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.typesafe.config.Config;
@@ -12,8 +13,21 @@ import com.typesafe.config.ConfigObject;
 public class CrawlerSettings implements Extension {
 	public final List<SeedConfig> seeds;
 	public final int fetchers;
+	public final int pool;
 	public final int pages;
 	public final int frontierheap;
+	public final long visitedheap;
+	public final int snapshot;
+	public final int batch;
+	public final int batchwindow;
+	public final int lease;
+	public final int leasetimeout;
+	public final boolean sortedqueue;
+	public final boolean pipeline;
+	public final int recordbuffer;
+	public final int recordflush;
+	public final boolean recordgzip;
+	public final long recordroll;
 	
 	public static class SeedConfig {
 		public String site;
@@ -24,6 +38,10 @@ public class CrawlerSettings implements Extension {
 		public final int wait;
 		public final int randompause;
 		public final int maxfailures;
+		public int weight;
+		public List<String> targets;
+		public boolean rawfetch;
+		public List<String> skipassets;
 				
 		public SeedConfig(String site, String file, String goldenModel, int pages, 
 				boolean js, int wait, int pause, int maxfailures, 
@@ -38,6 +56,9 @@ public class CrawlerSettings implements Extension {
 			this.maxfailures = maxfailures;
 			this.crawl = crawl;
 			this.savepages = savepages;
+			this.weight = 1;
+			this.targets = new ArrayList<>();
+			this.skipassets = new ArrayList<>();
 		}
 		
 		public SeedConfig(String site, String file) {
@@ -51,6 +72,9 @@ public class CrawlerSettings implements Extension {
 			this.maxfailures = 1;
 			this.crawl = false;
 			this.savepages = false;
+			this.weight = 1;
+			this.targets = new ArrayList<>();
+			this.skipassets = new ArrayList<>();
 		}
 	}
 
@@ -58,8 +82,34 @@ public class CrawlerSettings implements Extension {
 		ConfigObject sites = config.getObject("crawler.modeler");
 		seeds = sites.keySet().stream().map(s -> conf(s,config)).collect(toList());
 		fetchers = config.getInt("crawler.crawling.fetchers");
+		pool = (config.hasPath("crawler.crawling.pool")) ? 
+				config.getInt("crawler.crawling.pool") : 0;
 		pages = config.getInt("crawler.crawling.pages");
 		frontierheap = config.getInt("crawler.crawling.frontierheap");
+		visitedheap = (config.hasPath("crawler.crawling.visitedheap")) ? 
+				config.getBytes("crawler.crawling.visitedheap") : 8*1024*1024;
+		snapshot = (config.hasPath("crawler.crawling.snapshot")) ? 
+				config.getInt("crawler.crawling.snapshot") : 10000;
+		batch = (config.hasPath("crawler.crawling.batch")) ? 
+				config.getInt("crawler.crawling.batch") : 1;
+		batchwindow = (config.hasPath("crawler.crawling.batchwindow")) ? 
+				config.getInt("crawler.crawling.batchwindow") : 0;
+		lease = (config.hasPath("crawler.crawling.lease")) ? 
+				config.getInt("crawler.crawling.lease") : 1;
+		leasetimeout = (config.hasPath("crawler.crawling.leasetimeout")) ? 
+				config.getInt("crawler.crawling.leasetimeout") : 300;
+		sortedqueue = (config.hasPath("crawler.crawling.sortedqueue")) ? 
+				config.getBoolean("crawler.crawling.sortedqueue") : false;
+		pipeline = (config.hasPath("crawler.crawling.pipeline")) ? 
+				config.getBoolean("crawler.crawling.pipeline") : false;
+		recordbuffer = (config.hasPath("crawler.crawling.recordbuffer")) ? 
+				Math.toIntExact(config.getBytes("crawler.crawling.recordbuffer")) : 64*1024;
+		recordflush = (config.hasPath("crawler.crawling.recordflush")) ? 
+				config.getInt("crawler.crawling.recordflush") : 5;
+		recordgzip = (config.hasPath("crawler.crawling.recordgzip")) ? 
+				config.getBoolean("crawler.crawling.recordgzip") : false;
+		recordroll = (config.hasPath("crawler.crawling.recordroll")) ? 
+				config.getBytes("crawler.crawling.recordroll") : 0;
 	}
 	
 	private SeedConfig conf(String site, Config conf) {
@@ -73,6 +123,10 @@ public class CrawlerSettings implements Extension {
 		String failuresp = "crawler.modeler."+key+".maxfailures";
 		String crawlp = "crawler.modeler."+key+".crawl";
 		String savepagesp = "crawler.modeler."+key+".savepages";
+		String weightp = "crawler.modeler."+key+".weight";
+		String targetsp = "crawler.modeler."+key+".targets";
+		String rawfetchp = "crawler.modeler."+key+".rawfetch";
+		String skipassetsp = "crawler.modeler."+key+".skipassets";
 		
 		String file = (conf.hasPath(filep)) ? conf.getString(filep) : null;
 		String goldenModel = (conf.hasPath(goldenModelp)) ? conf.getString(goldenModelp) : null;
@@ -84,7 +138,12 @@ public class CrawlerSettings implements Extension {
 		boolean crawl = (conf.hasPath(crawlp)) ? conf.getBoolean(crawlp) : false;
 		boolean savepages = (conf.hasPath(savepagesp)) ? conf.getBoolean(savepagesp) : false;
 		
-		return new SeedConfig(site,file,goldenModel,pages,js,wait,random,failures,crawl,savepages);
+		SeedConfig seed = new SeedConfig(site,file,goldenModel,pages,js,wait,random,failures,crawl,savepages);
+		if (conf.hasPath(weightp)) seed.weight = conf.getInt(weightp);
+		if (conf.hasPath(targetsp)) seed.targets = conf.getStringList(targetsp);
+		if (conf.hasPath(rawfetchp)) seed.rawfetch = conf.getBoolean(rawfetchp);
+		if (conf.hasPath(skipassetsp)) seed.skipassets = conf.getStringList(skipassetsp);
+		return seed;
 	}
 
 }
\ No newline at end of file
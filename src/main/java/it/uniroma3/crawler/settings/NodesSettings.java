@@ -1,5 +1,8 @@
 package it.uniroma3.crawler.settings;
 
+import java.util.Arrays;
+import java.util.function.ToLongBiFunction;
+
 import com.typesafe.config.Config;
 import com.typesafe.config.ConfigObject;
 
@@ -7,11 +10,18 @@ import akka.actor.Extension;
 
 public class NodesSettings implements Extension {
 	public final String[] nodes;
-	
+	public final int[] workers;
+	public final long[] segments;
+	public final int[] templates;
+
 	public NodesSettings(Config config) {
-		nodes = addresses(config.getObject("nodes"));
+		ConfigObject nodesConf = config.getObject("nodes");
+		nodes = addresses(nodesConf);
+		workers = toInt(perNode(nodesConf, "workers", Config::getInt, 4));
+		segments = perNode(nodesConf, "segment", Config::getBytes, 100*1024*1024);
+		templates = toInt(perNode(nodesConf, "template", Config::getInt, 0));
 	}
-	
+
 	private String[] addresses(ConfigObject nodes) {
 		String[] addr = new String[nodes.keySet().size()];
 		int i=0;
@@ -25,4 +35,24 @@ public class NodesSettings implements Extension {
 		}
 		return addr;
 	}
+
+	/*
+	 * Reads an optional value of each node, in the order of the nodes,
+	 * using the given default for the nodes that do not specify it
+	 */
+	private long[] perNode(ConfigObject nodes, String path, 
+			ToLongBiFunction<Config, String> value, long def) {
+		long[] values = new long[nodes.keySet().size()];
+		int i=0;
+		for (String k : nodes.keySet()) {
+			Config node = nodes.toConfig().getConfig(k);
+			values[i] = (node.hasPath(path)) ? value.applyAsLong(node, path) : def;
+			i++;
+		}
+		return values;
+	}
+
+	private int[] toInt(long[] values) {
+		return Arrays.stream(values).mapToInt(Math::toIntExact).toArray();
+	}
 }
@@ -0,0 +1,211 @@
+package it.uniroma3.crawler.util;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.gargoylesoftware.htmlunit.html.HtmlImage;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * A node-local store of the assets (i.e. images) of the crawled pages,
+ * where each asset is saved once in a file named by the SHA-1 hash of its content.
+ * <br>
+ * Every asset URL is fetched at most once: the file of each stored URL is kept in memory
+ * and appended to the index <code>assets.idx</code>, as a line <code>url \t file</code>,
+ * so that pages can reference their assets by URL instead of saving a copy of them.
+ * The images of a page are downloaded by a few threads of the store, 
+ * off the actor that saves the page.
+ */
+public class AssetStore {
+	private static Logger log = Logger.getLogger(AssetStore.class.getName());
+	private final static AssetStore store = new AssetStore("html/assets");
+	private final static int TIMEOUT = 30000;
+	private final static int MAX_SIZE = 16*1024*1024;
+	private final static int DOWNLOADERS = 2;
+
+	private final File directory;
+	private final ConcurrentMap<String, String> files; // by asset URL, empty if not available
+	private final Set<String> pending; // asset URLs waiting for their download
+	private final ExecutorService downloads;
+	private Writer index;
+
+	/**
+	 * Constructs a new AssetStore in the given directory,
+	 * loading the index of the assets already stored.
+	 * @param directory the directory of the assets
+	 */
+	public AssetStore(String directory) {
+		this.directory = new File(directory);
+		this.files = new ConcurrentHashMap<>();
+		this.pending = ConcurrentHashMap.newKeySet();
+		this.downloads = Executors.newFixedThreadPool(DOWNLOADERS, task -> {
+			Thread thread = new Thread(task, "asset-download");
+			thread.setDaemon(true);
+			return thread;
+		});
+		File idx = new File(directory, "assets.idx");
+		try {
+			if (idx.exists()) {
+				for (String line : Files.readAllLines(idx.toPath(), StandardCharsets.UTF_8)) {
+					int tab = line.lastIndexOf('\t');
+					if (tab>0) files.put(line.substring(0, tab), line.substring(tab+1));
+				}
+			}
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Cannot read assets index: "+e.getMessage());
+		}
+	}
+
+	/**
+	 * @return the store shared by the actors of this node
+	 */
+	public static AssetStore getInstance() {
+		return store;
+	}
+
+	/**
+	 * Stores the images of the given page that are not stored yet, 
+	 * downloading them in the background so that the caller does not wait for them.
+	 * @param html the page
+	 * @return the URLs of the images of the page
+	 */
+	public List<String> saveImages(HtmlPage html) {
+		List<String> urls = new ArrayList<>();
+		List<HtmlImage> images = XPathUtils.getByXPath(html, "//img[@src]");
+		for (HtmlImage img : images) {
+			try {
+				String url = new URL(html.getBaseURL(), img.getSrcAttribute()).toString();
+				urls.add(url);
+				if (!files.containsKey(url) && pending.add(url))
+					downloads.execute(() -> {
+						save(url);
+						pending.remove(url);
+					});
+			} catch (IOException e) {
+				continue; // malformed src
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * Stores the asset at the given URL, unless it was already fetched.
+	 * @param url the URL of the asset
+	 * @return the file of the asset, or an empty string if it is not available
+	 */
+	public String save(String url) {
+		String file = files.get(url);
+		if (file!=null) return file;
+		try {
+			file = store(url, download(url));
+		} catch (IOException e) {
+			file = ""; // not fetched again
+			files.putIfAbsent(url, file);
+		}
+		return file;
+	}
+
+	/**
+	 * @param url the URL of an asset
+	 * @return the file of the asset, or null if it was not stored
+	 */
+	public String getFile(String url) {
+		String file = files.get(url);
+		return (file!=null && !file.isEmpty()) ? file : null;
+	}
+
+	/**
+	 * Stores the given content of the asset at the given URL,
+	 * in a new file if no other asset has the same content.
+	 * @param url the URL of the asset
+	 * @param content the content of the asset
+	 * @return the file of the asset
+	 * @throws IOException if the asset cannot be written
+	 */
+	String store(String url, byte[] content) throws IOException {
+		String file = hash(content)+extension(url);
+		File target = new File(directory, file);
+		if (!target.exists()) {
+			if (!directory.isDirectory() && !directory.mkdirs())
+				throw new IOException("Cannot create directory "+directory);
+			File temp = File.createTempFile("asset", ".tmp", directory);
+			Files.write(temp.toPath(), content);
+			Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+		if (files.putIfAbsent(url, file)==null) writeIndex(url, file);
+		return file;
+	}
+
+	private synchronized void writeIndex(String url, String file) throws IOException {
+		if (index==null)
+			index = new BufferedWriter(new OutputStreamWriter(
+					new FileOutputStream(new File(directory, "assets.idx"), true),
+					StandardCharsets.UTF_8));
+		index.write(url+"\t"+file+"\n");
+		index.flush();
+	}
+
+	private static byte[] download(String url) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+		conn.setConnectTimeout(TIMEOUT);
+		conn.setReadTimeout(TIMEOUT);
+		if (conn.getResponseCode()>=400)
+			throw new IOException("HTTP "+conn.getResponseCode()+" for "+url);
+		try (InputStream in = conn.getInputStream()) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(16*1024);
+			byte[] buffer = new byte[8*1024];
+			int n;
+			while ((n = in.read(buffer))>0) {
+				out.write(buffer, 0, n);
+				if (out.size()>MAX_SIZE) throw new IOException("Asset too large: "+url);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	private static String hash(byte[] content) {
+		try {
+			StringBuilder hex = new StringBuilder(40);
+			for (byte b : MessageDigest.getInstance("SHA-1").digest(content))
+				hex.append(String.format("%02x", b & 0xff));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*
+	 * Returns the file extension of the path of the given URL, if any
+	 */
+	private static String extension(String url) {
+		String path = url.replaceFirst("[?#].*$", "");
+		int slash = path.lastIndexOf('/');
+		int dot = path.lastIndexOf('.');
+		if (dot>slash && path.length()-dot<=5 && path.substring(dot+1).matches("[A-Za-z0-9]+"))
+			return path.substring(dot).toLowerCase();
+		return "";
+	}
+
+}
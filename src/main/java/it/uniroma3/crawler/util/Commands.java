@@ -10,6 +10,10 @@ public class Commands {
 	public static final short SAVE = 9;
 	public static final short SAVED = 10;
 	public static final short ERROR = 11;
+	public static final short FLUSH = 12;
+	public static final short TICK = 13;
+	public static final short READY = 14;
 	
 	public static final String REPOSITORY = "/user/controller/repository";
+	public static final String FRONTIER = "/user/controller/frontier_";
 }
@@ -0,0 +1,527 @@
+package it.uniroma3.crawler.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringEscapeUtils;
+
+/**
+ * A CompactDom is an immutable DOM tree of an HTML document, built straight from its
+ * source by a simple tokenizer and kept in a few arrays over the source characters,
+ * instead of an object for each node and attribute.
+ * <br>
+ * Nodes are numbered in document order, starting from the document node {@value #DOCUMENT}:
+ * for each node the arrays hold the id of its tag name, the index of its parent,
+ * the index following its last descendant and the offsets of its text or attributes.
+ * Entities are decoded only when a text or attribute value is read.
+ * <br>
+ * Like a browser, the tokenizer implies the missing <code>html</code>, <code>head</code>,
+ * <code>body</code> and <code>tbody</code> elements and the omitted end tags
+ * of paragraphs, list items, options and table cells, so that the paths of the elements
+ * are the same as in the DOM built by HtmlUnit for most pages. Scripts are not run:
+ * pages built by JavaScript still need HtmlUnit.
+ */
+public final class CompactDom {
+	public final static int DOCUMENT = 0;
+	private final static int TEXT = -1;
+	private final static Set<String> VOID = set("area", "base", "br", "col", "embed", "hr",
+			"img", "input", "keygen", "link", "meta", "param", "source", "track", "wbr");
+	private final static Set<String> RAW_TEXT = set("script", "style", "textarea", "title", "xmp");
+	private final static Set<String> HEAD = set("base", "link", "meta", "noscript", "script",
+			"style", "template", "title");
+	private final static Set<String> CLOSE_P = set("address", "article", "aside", "blockquote",
+			"center", "details", "dialog", "dir", "div", "dl", "fieldset", "figcaption", "figure",
+			"footer", "form", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hgroup", "hr", "li",
+			"main", "menu", "nav", "ol", "p", "pre", "section", "summary", "table", "ul");
+	private final static Set<String> SCOPE = set("applet", "button", "caption", "html",
+			"marquee", "object", "table", "td", "template", "th");
+
+	private final char[] source;
+	private final String[] names; // tag and attribute names, by id
+	private final int size;
+	private final int[] tag; // name id of elements, TEXT for text nodes
+	private final int[] parent;
+	private final int[] end; // the index following the last descendant
+	private final int[] start, length; // of the text of text nodes
+	private final int[] attributes; // first attribute of each node, size+1 entries
+	private final int[] attrName, attrStart, attrLength;
+
+	private CompactDom(Builder b) {
+		this.source = b.source;
+		this.names = b.names.toArray(new String[b.names.size()]);
+		this.size = b.size;
+		this.tag = Arrays.copyOf(b.tag, size);
+		this.parent = Arrays.copyOf(b.parent, size);
+		this.end = Arrays.copyOf(b.end, size);
+		this.start = Arrays.copyOf(b.start, size);
+		this.length = Arrays.copyOf(b.length, size);
+		this.attributes = Arrays.copyOf(b.attributes, size+1);
+		this.attributes[size] = b.attrCount;
+		this.attrName = Arrays.copyOf(b.attrName, b.attrCount);
+		this.attrStart = Arrays.copyOf(b.attrStart, b.attrCount);
+		this.attrLength = Arrays.copyOf(b.attrLength, b.attrCount);
+	}
+
+	/**
+	 * Builds the DOM of the given HTML source.
+	 * @param html the HTML source
+	 * @return the DOM
+	 */
+	public static CompactDom parse(String html) {
+		return new Builder(html.toCharArray()).build();
+	}
+
+	/**
+	 * @return the number of nodes, including the document node
+	 */
+	public int size() {
+		return size;
+	}
+
+	public boolean isElement(int node) {
+		return node!=DOCUMENT && tag[node]!=TEXT;
+	}
+
+	public boolean isText(int node) {
+		return tag[node]==TEXT;
+	}
+
+	/**
+	 * @param node an element
+	 * @return the tag name of the element, in lower case
+	 */
+	public String getTagName(int node) {
+		return (isElement(node)) ? names[tag[node]] : null;
+	}
+
+	/**
+	 * @param node a node
+	 * @return the parent of the node, or -1 for the document
+	 */
+	public int getParent(int node) {
+		return parent[node];
+	}
+
+	/**
+	 * @param node a node
+	 * @return the first child of the node, or -1 if none
+	 */
+	public int getFirstChild(int node) {
+		return (node+1<end[node]) ? node+1 : -1;
+	}
+
+	/**
+	 * @param node a node
+	 * @return the next sibling of the node, or -1 if none
+	 */
+	public int getNextSibling(int node) {
+		return (node!=DOCUMENT && end[node]<end[parent[node]]) ? end[node] : -1;
+	}
+
+	/**
+	 * @param node an element
+	 * @return the number of attributes of the element
+	 */
+	public int getAttributeCount(int node) {
+		return attributes[node+1]-attributes[node];
+	}
+
+	/**
+	 * @param node an element
+	 * @param i the position of the attribute, in source order
+	 * @return the name of the attribute, in lower case
+	 */
+	public String getAttributeName(int node, int i) {
+		return names[attrName[attributes[node]+i]];
+	}
+
+	/**
+	 * @param node an element
+	 * @param i the position of the attribute, in source order
+	 * @return the value of the attribute
+	 */
+	public String getAttributeValue(int node, int i) {
+		int a = attributes[node]+i;
+		return decode(attrStart[a], attrLength[a]);
+	}
+
+	/**
+	 * @param node an element
+	 * @param name an attribute name, in lower case
+	 * @return the value of the attribute, or null if the element has no such attribute
+	 */
+	public String getAttribute(int node, String name) {
+		int a = attribute(node, name);
+		return (a>=0) ? decode(attrStart[a], attrLength[a]) : null;
+	}
+
+	public boolean hasAttribute(int node, String name) {
+		return attribute(node, name)>=0;
+	}
+
+	/**
+	 * @param node a text node
+	 * @return the text, with entities decoded and non-breaking spaces
+	 * turned into spaces, as in the text output of HtmlUnit
+	 */
+	public String getText(int node) {
+		return (isText(node)) ? decode(start[node], length[node]).replace('\u00a0', ' ') : null;
+	}
+
+	/**
+	 * @param node a node
+	 * @return the text of the node and of its descendants
+	 */
+	public String getTextContent(int node) {
+		if (isText(node)) return getText(node);
+		StringBuilder text = new StringBuilder();
+		for (int n=node+1; n<end[node]; n++)
+			if (isText(n)) text.append(getText(n));
+		return text.toString();
+	}
+
+	private int attribute(int node, String name) {
+		for (int a=attributes[node]; a<attributes[node+1]; a++)
+			if (names[attrName[a]].equals(name)) return a;
+		return -1;
+	}
+
+	private String decode(int from, int len) {
+		String s = new String(source, from, len);
+		if (s.indexOf('&')<0) return s;
+		// &apos; is not an HTML 4 entity, but browsers decode it anyway
+		return StringEscapeUtils.unescapeHtml4(s).replace("&apos;", "'");
+	}
+
+	private static Set<String> set(String... names) {
+		return new HashSet<>(Arrays.asList(names));
+	}
+
+	/*
+	 * Tokenizes the source, appending the nodes in document order
+	 */
+	private static class Builder {
+		private final char[] source;
+		private final java.util.List<String> names = new java.util.ArrayList<>();
+		private final Map<String, Integer> ids = new HashMap<>();
+		private int size, attrCount;
+		private int[] tag = new int[256], parent = new int[256], end = new int[256];
+		private int[] start = new int[256], length = new int[256], attributes = new int[257];
+		private int[] attrName = new int[256], attrStart = new int[256], attrLength = new int[256];
+		private int[] open = new int[64]; // the stack of the open nodes
+		private int depth;
+		private int head = -1, body = -1;
+
+		Builder(char[] source) {
+			this.source = source;
+		}
+
+		CompactDom build() {
+			add(-2, 0, 0); // the document
+			open[depth++] = DOCUMENT;
+			int i = 0, n = source.length;
+			while (i<n) {
+				if (source[i]=='<' && i+1<n) {
+					char c = source[i+1];
+					if (startsWith("<!--", i)) {
+						int close = indexOf("-->", i+4);
+						i = (close<0) ? n : close+3;
+						continue;
+					}
+					if (c=='!' || c=='?') {
+						int close = indexOf(">", i+2);
+						i = (close<0) ? n : close+1;
+						continue;
+					}
+					if (c=='/' && i+2<n && Character.isLetter(source[i+2])) {
+						int nameEnd = nameEnd(i+2);
+						int close = indexOf(">", nameEnd);
+						endTag(new String(source, i+2, nameEnd-i-2).toLowerCase());
+						i = (close<0) ? n : close+1;
+						continue;
+					}
+					if (Character.isLetter(c)) {
+						i = startTag(i+1);
+						continue;
+					}
+				}
+				int next = indexOf("<", i+1);
+				if (next<0) next = n;
+				text(i, next);
+				i = next;
+			}
+			while (depth>0) close();
+			return new CompactDom(this);
+		}
+
+		/*
+		 * Parses the start tag at the given position, returning the position after it
+		 */
+		private int startTag(int i) {
+			int nameEnd = nameEnd(i);
+			String name = new String(source, i, nameEnd-i).toLowerCase();
+			int element = openElement(name);
+			int n = source.length;
+			i = nameEnd;
+			boolean selfClosing = false;
+			while (i<n && source[i]!='>') {
+				char c = source[i];
+				if (c=='/') {
+					selfClosing = i+1<n && source[i+1]=='>';
+					i++;
+				}
+				else if (Character.isWhitespace(c)) i++;
+				else {
+					int attrEnd = i;
+					while (attrEnd<n && !Character.isWhitespace(source[attrEnd]) &&
+							source[attrEnd]!='=' && source[attrEnd]!='>' &&
+							(source[attrEnd]!='/' || attrEnd==i)) attrEnd++;
+					String attr = new String(source, i, attrEnd-i).toLowerCase();
+					i = attrEnd;
+					while (i<n && Character.isWhitespace(source[i])) i++;
+					int valueStart = i, valueEnd = i;
+					if (i<n && source[i]=='=') {
+						i++;
+						while (i<n && Character.isWhitespace(source[i])) i++;
+						if (i<n && (source[i]=='"' || source[i]=='\'')) {
+							char quote = source[i];
+							valueStart = i+1;
+							valueEnd = valueStart;
+							while (valueEnd<n && source[valueEnd]!=quote) valueEnd++;
+							i = Math.min(valueEnd+1, n);
+						}
+						else {
+							valueStart = i;
+							while (i<n && !Character.isWhitespace(source[i]) && source[i]!='>') i++;
+							valueEnd = i;
+						}
+					}
+					addAttribute(element, attr, valueStart, valueEnd-valueStart);
+				}
+			}
+			i = Math.min(i+1, n);
+			if (VOID.contains(name) || selfClosing) closeElement(name);
+			else if (RAW_TEXT.contains(name)) {
+				int close = indexOfIgnoreCase("</"+name, i);
+				if (close<0) close = n;
+				if (close>i) addText(i, close);
+				closeElement(name);
+				int gt = indexOf(">", close);
+				i = (gt<0) ? n : gt+1;
+			}
+			return i;
+		}
+
+		private void endTag(String name) {
+			if (name.equals("html") || name.equals("body")) return; // content may follow
+			if (name.equals("br")) {
+				openElement(name);
+				closeElement(name);
+			}
+			else closeElement(name);
+		}
+
+		private void text(int from, int to) {
+			boolean blank = true;
+			for (int i=from; i<to && blank; i++)
+				blank = Character.isWhitespace(source[i]);
+			String top = top();
+			if (top==null || top.equals("html") || top.equals("head")) {
+				if (blank) {
+					if (top!=null && top.equals("head")) addText(from, to);
+					return;
+				}
+				openBody();
+			}
+			addText(from, to);
+		}
+
+		/*
+		 * Opens an element, implying the missing parents and end tags
+		 */
+		private int openElement(String name) {
+			if (name.equals("html"))
+				return (depth==1) ? open(name) : -1; // the attributes are dropped
+			if (depth==1) open("html");
+			if (name.equals("head"))
+				return (head<0 && body<0 && top().equals("html")) ? (head = open(name)) : -1;
+			if (name.equals("body")) {
+				if (body>=0) return -1;
+				openBody();
+				return body;
+			}
+			String top = top();
+			if (top.equals("html")) {
+				if (body<0 && head<0 && HEAD.contains(name)) head = open("head");
+				else if (body<0 && head>=0 && HEAD.contains(name)) {
+					// after the end of the head, still part of it
+				}
+				else openBody();
+			}
+			else if (top.equals("head") && !HEAD.contains(name)) openBody();
+			if (name.equals("li")) closeInScope("li", "ul", "ol");
+			else if (name.equals("dt") || name.equals("dd")) closeInScope(name, "dl");
+			else if (name.equals("option")) closeInScope("option", "select", "datalist");
+			else if (name.equals("td") || name.equals("th")) closeCell();
+			else if (name.equals("tr")) {
+				closeCell();
+				closeInScope("tr", "table");
+				if (top().equals("table")) open("tbody");
+			}
+			else if (name.equals("tbody") || name.equals("thead") || name.equals("tfoot")) {
+				closeCell();
+				closeInScope("tr", "table");
+				closeInScope("tbody", "table");
+				closeInScope("thead", "table");
+				closeInScope("tfoot", "table");
+			}
+			if (CLOSE_P.contains(name)) closeInScope("p", SCOPE);
+			return open(name);
+		}
+
+		private void openBody() {
+			if (depth==1) open("html");
+			if (top().equals("head")) close();
+			if (top().equals("html") && body<0) {
+				if (head<0) head = open("head");
+				if (top().equals("head")) close();
+				body = open("body");
+			}
+		}
+
+		private void closeCell() {
+			closeInScope("td", "table", "tr");
+			closeInScope("th", "table", "tr");
+		}
+
+		private void closeInScope(String name, String... stoppers) {
+			closeInScope(name, set(stoppers));
+		}
+
+		/*
+		 * Closes the nearest open element with the given name,
+		 * unless an element with one of the stopper names is found first
+		 */
+		private void closeInScope(String name, Set<String> stoppers) {
+			for (int d=depth-1; d>0; d--) {
+				String n = names.get(tag[open[d]]);
+				if (n.equals(name)) {
+					while (depth>d) close();
+					return;
+				}
+				if (stoppers.contains(n)) return;
+			}
+		}
+
+		private void closeElement(String name) {
+			for (int d=depth-1; d>0; d--) {
+				if (names.get(tag[open[d]]).equals(name)) {
+					while (depth>d) close();
+					return;
+				}
+			}
+		}
+
+		private String top() {
+			int node = open[depth-1];
+			return (node==DOCUMENT) ? null : names.get(tag[node]);
+		}
+
+		private int open(String name) {
+			int node = add(id(name), 0, 0);
+			if (depth==open.length) open = Arrays.copyOf(open, depth*2);
+			open[depth++] = node;
+			return node;
+		}
+
+		private void close() {
+			int node = open[--depth];
+			end[node] = size;
+		}
+
+		private void addText(int from, int to) {
+			end[add(TEXT, from, to-from)] = size;
+		}
+
+		private int add(int name, int from, int len) {
+			if (size+1>=tag.length) {
+				int capacity = tag.length*2;
+				tag = Arrays.copyOf(tag, capacity);
+				parent = Arrays.copyOf(parent, capacity);
+				end = Arrays.copyOf(end, capacity);
+				start = Arrays.copyOf(start, capacity);
+				length = Arrays.copyOf(length, capacity);
+				attributes = Arrays.copyOf(attributes, capacity+1);
+			}
+			int node = size++;
+			tag[node] = name;
+			parent[node] = (depth>0) ? open[depth-1] : -1;
+			start[node] = from;
+			length[node] = len;
+			attributes[node] = attrCount;
+			attributes[node+1] = attrCount;
+			return node;
+		}
+
+		private void addAttribute(int element, String name, int from, int len) {
+			if (element!=size-1) return; // html attributes after the first tag
+			int id = id(name);
+			for (int a=attributes[element]; a<attrCount; a++)
+				if (attrName[a]==id) return; // the first one wins
+			if (attrCount==attrName.length) {
+				int capacity = attrCount*2;
+				attrName = Arrays.copyOf(attrName, capacity);
+				attrStart = Arrays.copyOf(attrStart, capacity);
+				attrLength = Arrays.copyOf(attrLength, capacity);
+			}
+			attrName[attrCount] = id;
+			attrStart[attrCount] = from;
+			attrLength[attrCount] = len;
+			attrCount++;
+			attributes[element+1] = attrCount;
+		}
+
+		private int id(String name) {
+			Integer id = ids.get(name);
+			if (id==null) {
+				id = names.size();
+				names.add(name);
+				ids.put(name, id);
+			}
+			return id;
+		}
+
+		private int nameEnd(int i) {
+			while (i<source.length && !Character.isWhitespace(source[i]) &&
+					source[i]!='>' && source[i]!='/') i++;
+			return i;
+		}
+
+		private boolean startsWith(String s, int i) {
+			if (i+s.length()>source.length) return false;
+			for (int j=0; j<s.length(); j++)
+				if (source[i+j]!=s.charAt(j)) return false;
+			return true;
+		}
+
+		private int indexOf(String s, int from) {
+			for (int i=from; i<=source.length-s.length(); i++)
+				if (startsWith(s, i)) return i;
+			return -1;
+		}
+
+		private int indexOfIgnoreCase(String s, int from) {
+			outer:
+			for (int i=from; i<=source.length-s.length(); i++) {
+				for (int j=0; j<s.length(); j++)
+					if (Character.toLowerCase(source[i+j])!=s.charAt(j)) continue outer;
+				return i;
+			}
+			return -1;
+		}
+	}
+
+}
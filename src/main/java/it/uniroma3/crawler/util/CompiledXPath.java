@@ -0,0 +1,368 @@
+package it.uniroma3.crawler.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.IntStream;
+
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.DomText;
+
+/**
+ * A CompiledXPath is an XPath of the restricted dialect generated by the modeler,
+ * parsed once and matched directly over the DOM nodes, without the general XPath engine.
+ * <br>
+ * The dialect is made of location paths of child and descendant steps over tag names
+ * (or <code>*</code>), with predicates <code>[@attr]</code> and <code>[@attr="value"]</code>
+ * joined by <code>and</code>, optionally ending with <code>/text()</code> or
+ * <code>/@attr</code>, such as: <code>//div[@id="content"]/ul[@class]/li/a</code>.
+ * Paths can be absolute or relative to the context node, as <code>./div/a</code>.
+ * <br>
+ * A path is matched in a single traversal of the DOM, keeping the set of steps
+ * each node may match as a bit mask, either over the nodes of HtmlUnit
+ * or over the arrays of a {@link CompactDom}.
+ */
+public class CompiledXPath {
+	final static long MATCHED = 1L<<63;
+	private final static int MAX_STEPS = 63;
+	private final static int MAX_CACHED = 4096;
+	private final static int ELEMENT = 0, TEXT = 1, ATTRIBUTE = 2;
+	private final static ConcurrentMap<String, Optional<CompiledXPath>> cache =
+			new ConcurrentHashMap<>();
+
+	private final String xpath;
+	private final List<Step> steps;
+	private boolean absolute;
+	private int select = ELEMENT;
+	private String attribute;
+
+	/*
+	 * A location step, matching elements by name and attributes
+	 */
+	private static class Step {
+		private final boolean descendant;
+		private final String name;
+		private final List<String> attributes = new ArrayList<>();
+		private final List<String> values = new ArrayList<>(); // null to match any value
+
+		Step(boolean descendant, String name) {
+			this.descendant = descendant;
+			this.name = name;
+		}
+
+		boolean matches(DomElement element) {
+			if (!name.equals("*") && !name.equalsIgnoreCase(element.getLocalName()))
+				return false;
+			for (int i=0; i<attributes.size(); i++) {
+				String attr = attributes.get(i);
+				if (!element.hasAttribute(attr)) return false;
+				String value = values.get(i);
+				if (value!=null && !value.equals(element.getAttribute(attr))) return false;
+			}
+			return true;
+		}
+
+		boolean matches(CompactDom dom, int element) {
+			if (!name.equals("*") && !name.equals(dom.getTagName(element)))
+				return false;
+			for (int i=0; i<attributes.size(); i++) {
+				String value = dom.getAttribute(element, attributes.get(i));
+				if (value==null) return false;
+				if (values.get(i)!=null && !values.get(i).equals(value)) return false;
+			}
+			return true;
+		}
+	}
+
+	private CompiledXPath(String xpath) {
+		this.xpath = xpath;
+		this.steps = new ArrayList<>();
+	}
+
+	/**
+	 * Compiles the given XPath.
+	 * @param xpath the XPath
+	 * @return the compiled XPath, or null if it is not in the supported dialect
+	 */
+	public static CompiledXPath compile(String xpath) {
+		CompiledXPath compiled = new CompiledXPath(xpath);
+		return (compiled.parse(xpath.trim())) ? compiled : null;
+	}
+
+	/**
+	 * Returns the compiled version of the given XPath,
+	 * compiling it only the first time it is requested.
+	 * @param xpath the XPath
+	 * @return the compiled XPath, or null if it is not in the supported dialect
+	 */
+	public static CompiledXPath get(String xpath) {
+		Optional<CompiledXPath> compiled = cache.get(xpath);
+		if (compiled==null) {
+			if (cache.size()>=MAX_CACHED) cache.clear();
+			compiled = Optional.ofNullable(compile(xpath));
+			cache.put(xpath, compiled);
+		}
+		return compiled.orElse(null);
+	}
+
+	/**
+	 * @return the source of this XPath
+	 */
+	public String getXPath() {
+		return xpath;
+	}
+
+	/**
+	 * @return true if this XPath ends with an attribute step
+	 */
+	public boolean selectsAttribute() {
+		return select==ATTRIBUTE;
+	}
+
+	/**
+	 * Evaluates this XPath from the given context node.
+	 * @param context the context node, the document if this XPath is absolute
+	 * @return the matching nodes, in document order
+	 */
+	public List<Object> evaluate(DomNode context) {
+		List<Object> matches = new ArrayList<>();
+		visit((absolute) ? context.getPage() : context, 1L, matches);
+		return matches;
+	}
+
+	private void visit(DomNode node, long states, List<Object> matches) {
+		for (DomNode child=node.getFirstChild(); child!=null; child=child.getNextSibling()) {
+			if (!(child instanceof DomElement)) continue;
+			DomElement element = (DomElement) child;
+			long following = advance(states, element);
+			if ((following & MATCHED)!=0) select(element, matches);
+			following &= ~MATCHED;
+			if (following!=0) visit(element, following, matches);
+		}
+	}
+
+	/**
+	 * Evaluates this XPath from the given node of a {@link CompactDom}.
+	 * @param dom the DOM
+	 * @param context the context node, ignored if this XPath is absolute
+	 * @return the matching nodes, in document order; for an attribute step,
+	 * the elements having the attribute
+	 */
+	public int[] evaluate(CompactDom dom, int context) {
+		IntStream.Builder matches = IntStream.builder();
+		visit(dom, (absolute) ? CompactDom.DOCUMENT : context, 1L, matches);
+		return matches.build().toArray();
+	}
+
+	private void visit(CompactDom dom, int node, long states, IntStream.Builder matches) {
+		for (int child=dom.getFirstChild(node); child>=0; child=dom.getNextSibling(child)) {
+			if (!dom.isElement(child)) continue;
+			long following = advance(states, dom, child);
+			if ((following & MATCHED)!=0) select(dom, child, matches);
+			following &= ~MATCHED;
+			if (following!=0) visit(dom, child, following, matches);
+		}
+	}
+
+	/**
+	 * Matches an element against the given steps.
+	 * @param states the steps the element may match, as bits of a mask
+	 * @param element the element
+	 * @return the steps the children of the element may match,
+	 * with the {@link #MATCHED} bit set if the element matches the whole path
+	 */
+	long advance(long states, DomElement element) {
+		int last = steps.size()-1;
+		long following = 0;
+		for (int k=0; k<=last; k++) {
+			if ((states & (1L<<k))==0) continue;
+			Step step = steps.get(k);
+			if (step.descendant) following |= 1L<<k;
+			if (step.matches(element))
+				following |= (k==last) ? MATCHED : 1L<<(k+1);
+		}
+		return following;
+	}
+
+	/**
+	 * Matches an element of a {@link CompactDom} against the given steps,
+	 * like {@link #advance(long, DomElement)}.
+	 */
+	long advance(long states, CompactDom dom, int element) {
+		int last = steps.size()-1;
+		long following = 0;
+		for (int k=0; k<=last; k++) {
+			if ((states & (1L<<k))==0) continue;
+			Step step = steps.get(k);
+			if (step.descendant) following |= 1L<<k;
+			if (step.matches(dom, element))
+				following |= (k==last) ? MATCHED : 1L<<(k+1);
+		}
+		return following;
+	}
+
+	/**
+	 * Adds the nodes selected by this XPath from an element matching its path.
+	 * @param element the matching element
+	 * @param matches the selected nodes
+	 */
+	void select(DomElement element, List<Object> matches) {
+		if (select==ELEMENT)
+			matches.add(element);
+		else if (select==TEXT) {
+			for (DomNode child=element.getFirstChild(); child!=null; child=child.getNextSibling())
+				if (child instanceof DomText) matches.add(child);
+		}
+		else if (element.hasAttribute(attribute))
+			matches.add(element.getAttributeNode(attribute));
+	}
+
+	/**
+	 * Adds the nodes selected by this XPath from an element of a {@link CompactDom}
+	 * matching its path.
+	 * @param dom the DOM
+	 * @param element the matching element
+	 * @param matches the selected nodes
+	 */
+	void select(CompactDom dom, int element, IntStream.Builder matches) {
+		if (select==ELEMENT)
+			matches.add(element);
+		else if (select==TEXT) {
+			for (int child=dom.getFirstChild(element); child>=0; child=dom.getNextSibling(child))
+				if (dom.isText(child)) matches.add(child);
+		}
+		else if (dom.hasAttribute(element, attribute))
+			matches.add(element);
+	}
+
+	/*
+	 * Parses the given XPath into steps, returning false if it is not in the dialect
+	 */
+	private boolean parse(String s) {
+		absolute = s.startsWith("/");
+		int i = (s.startsWith("./")) ? 1 : 0;
+		boolean first = (i==0 && !absolute); // a relative path without "./"
+		while (i<s.length()) {
+			boolean descendant = false;
+			if (s.startsWith("//", i)) {
+				descendant = true;
+				i += 2;
+			}
+			else if (i<s.length() && s.charAt(i)=='/') i++;
+			else if (!first) return false;
+			first = false;
+			if (steps.isEmpty() || descendant) {
+				// text() and attributes only after a child step from an element
+			}
+			else if (s.startsWith("text()", i) && i+6==s.length()) {
+				select = TEXT;
+				return true;
+			}
+			else if (i<s.length() && s.charAt(i)=='@') {
+				if (!isName(s.substring(i+1))) return false;
+				select = ATTRIBUTE;
+				attribute = s.substring(i+1).toLowerCase();
+				return true;
+			}
+			int start = i;
+			while (i<s.length() && (isNameChar(s.charAt(i)) || s.charAt(i)=='*')) i++;
+			String name = s.substring(start, i);
+			if (!name.equals("*") && !isName(name)) return false;
+			Step step = new Step(descendant, name.toLowerCase());
+			while (i<s.length() && s.charAt(i)=='[') {
+				int end = closing(s, i);
+				if (end<0 || !predicate(s.substring(i+1, end), step)) return false;
+				i = end+1;
+			}
+			steps.add(step);
+		}
+		return !steps.isEmpty() && steps.size()<=MAX_STEPS;
+	}
+
+	/*
+	 * Parses a predicate like: @class and @id="value"
+	 */
+	private static boolean predicate(String predicate, Step step) {
+		for (String term : splitAnd(predicate)) {
+			term = term.trim();
+			if (!term.startsWith("@")) return false;
+			int eq = term.indexOf('=');
+			String name = (eq<0) ? term.substring(1) : term.substring(1, eq).trim();
+			if (!isName(name)) return false;
+			String value = null;
+			if (eq>=0) {
+				value = term.substring(eq+1).trim();
+				if (value.length()<2) return false;
+				char quote = value.charAt(0);
+				if ((quote!='"' && quote!='\'') || value.charAt(value.length()-1)!=quote
+					|| value.indexOf(quote, 1)!=value.length()-1) return false;
+				value = value.substring(1, value.length()-1);
+			}
+			step.attributes.add(name.toLowerCase());
+			step.values.add(value);
+		}
+		return true;
+	}
+
+	/*
+	 * Splits the given predicate on the "and" outside of quotes
+	 */
+	private static List<String> splitAnd(String predicate) {
+		List<String> terms = new ArrayList<>();
+		char quote = 0;
+		int start = 0;
+		for (int i=0; i<predicate.length(); i++) {
+			char c = predicate.charAt(i);
+			if (quote!=0) {
+				if (c==quote) quote = 0;
+			}
+			else if (c=='"' || c=='\'') quote = c;
+			else if (predicate.startsWith(" and ", i)) {
+				terms.add(predicate.substring(start, i));
+				start = i+5;
+				i += 4;
+			}
+		}
+		terms.add(predicate.substring(start));
+		return terms;
+	}
+
+	/*
+	 * Returns the index of the bracket closing the one at the given index,
+	 * or -1 if not found
+	 */
+	private static int closing(String s, int open) {
+		char quote = 0;
+		for (int i=open+1; i<s.length(); i++) {
+			char c = s.charAt(i);
+			if (quote!=0) {
+				if (c==quote) quote = 0;
+			}
+			else if (c=='"' || c=='\'') quote = c;
+			else if (c=='[') return -1; // nested predicates are not supported
+			else if (c==']') return i;
+		}
+		return -1;
+	}
+
+	private static boolean isName(String name) {
+		if (name.isEmpty() || !Character.isLetter(name.charAt(0)) && name.charAt(0)!='_')
+			return false;
+		for (char c : name.toCharArray())
+			if (!isNameChar(c)) return false;
+		return true;
+	}
+
+	private static boolean isNameChar(char c) {
+		return Character.isLetterOrDigit(c) || c=='_' || c=='-' || c=='.';
+	}
+
+	@Override
+	public String toString() {
+		return xpath;
+	}
+
+}
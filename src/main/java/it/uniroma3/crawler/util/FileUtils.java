@@ -58,6 +58,16 @@ public class FileUtils {
     	return "html/"+normalizeURL(website)+"_mirror";
     }
     
+    /**
+     * Returns the path to the WARC directory assigned to this website.<br>
+     * The WARC directory contains the segments of the crawled html pages.
+     * @param website the website
+     * @return the directory path
+     */
+    public static String getWarcDirectory(String website) {
+    	return "html/"+normalizeURL(website)+"_warc";
+    }
+    
     /**
      * Deletes the temporary directory assigned to this website.
      * @param website
@@ -87,10 +87,48 @@ public class HtmlUtils {
 	 */
 	public static HtmlPage restorePageFromFile(String path, String url) 
 			throws IOException {
+		return restorePageFromFile(path, url, StandardCharsets.ISO_8859_1);
+	}
+	
+	/**
+	 * Produces a {@link HtmlPage} object from the given stored HTML file 
+	 * with the given URL, decoding it with the given charset.
+	 * @param path the path to the html file
+	 * @param url the URL that this should be associated with
+	 * @param charset the charset of the file
+	 * @return the loaded HtmlPage
+	 * @throws IOException if an IO error occurs
+	 */
+	public static HtmlPage restorePageFromFile(String path, String url, Charset charset) 
+			throws IOException {
 		String src = new String(Files.readAllBytes(
-				Paths.get(path.replaceFirst("^/(.:/)", "$1"))), 
-				StandardCharsets.ISO_8859_1);
-		StringWebResponse response = new StringWebResponse(src, new URL(url));
+				Paths.get(path.replaceFirst("^/(.:/)", "$1"))), charset);
+		return parsePage(src, new URL(url));
+	}
+	
+	/**
+	 * Produces a {@link HtmlPage} object from the WARC record at the given location.
+	 * @param location the location of the record, as returned by {@link WarcWriter#append}
+	 * @return the loaded HtmlPage
+	 * @throws IOException if an IO error occurs
+	 */
+	public static HtmlPage restorePageFromWarc(String location) throws IOException {
+		return parsePage(WarcReader.read(location));
+	}
+	
+	/**
+	 * Produces a {@link HtmlPage} object from the content of the given {@link RawPage}, 
+	 * decoded with its charset, without reading it back from disk.
+	 * @param raw the downloaded page
+	 * @return the parsed HtmlPage
+	 * @throws IOException if an IO error occurs
+	 */
+	public static HtmlPage parsePage(RawPage raw) throws IOException {
+		return parsePage(new String(raw.getContent(), raw.getCharset()), raw.getUrl());
+	}
+	
+	private static HtmlPage parsePage(String src, URL url) throws IOException {
+		StringWebResponse response = new StringWebResponse(src, url);
 		WebClient client = makeWebClient();
 		HtmlPage page = HTMLParser.parseHtml(response, client.getCurrentWindow());
 		client.close();
@@ -109,14 +147,7 @@ public class HtmlUtils {
 	 */
 	public static String savePage(HtmlPage html, String directory, boolean images) {
 		URL url = html.getUrl();
-		StringBuilder pathBuild = new StringBuilder(directory + url.getPath());
-		String query;
-		if ((query = url.getQuery()) != null)
-			pathBuild.append(transformURLQuery(query));
-		if (pathBuild.lastIndexOf("/") == pathBuild.length() - 1)
-			pathBuild.append("index");
-		pathBuild.append(".html");
-		String path = pathBuild.toString();
+		String path = getPagePath(url, directory);
 		File file = new File(path);
 		try {
 			if (images) {
@@ -141,6 +172,35 @@ public class HtmlUtils {
 		return path;
 	}
 	
+	/**
+	 * Saves the content of the specified {@link RawPage} as it is into the given directory, 
+	 * in the same file path as {@link #savePage(HtmlPage, String, boolean)}.
+	 * @param raw the web page to save
+	 * @param directory the root directory location in which the file will be saved
+	 * @return The absolute path where the file has been stored, or an empty string
+	 * if a IO error occurs while saving the page.
+	 */
+	public static String saveRawPage(RawPage raw, String directory) {
+		String path = getPagePath(raw.getUrl(), directory);
+		try {
+			FileUtils.writeByteArrayToFile(new File(path), raw.getContent());
+			return path;
+		} catch (IOException e) {
+			return "";
+		}
+	}
+	
+	private static String getPagePath(URL url, String directory) {
+		StringBuilder pathBuild = new StringBuilder(directory + url.getPath());
+		String query;
+		if ((query = url.getQuery()) != null)
+			pathBuild.append(transformURLQuery(query));
+		if (pathBuild.lastIndexOf("/") == pathBuild.length() - 1)
+			pathBuild.append("index");
+		pathBuild.append(".html");
+		return pathBuild.toString();
+	}
+	
 	private static String transformURLQuery(String queryString) {
 		String[] query = queryString.split("&");
 		StringBuilder subPath = new StringBuilder();
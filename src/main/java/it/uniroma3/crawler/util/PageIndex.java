@@ -0,0 +1,145 @@
+package it.uniroma3.crawler.util;
+
+import static org.iq80.leveldb.impl.Iq80DBFactory.factory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.iq80.leveldb.DB;
+import org.iq80.leveldb.DBException;
+import org.iq80.leveldb.DBIterator;
+import org.iq80.leveldb.Options;
+import org.iq80.leveldb.WriteBatch;
+
+/**
+ * A PageIndex maps the URLs of the stored pages of a website to their PageClass
+ * and to the file (or WARC record location) they are stored in,
+ * in a LevelDB database kept sorted by key.
+ * <br>
+ * Each page is stored under two keys: <code>u URL</code>, to look up a page by URL,
+ * and <code>c PageClass URL</code>, to scan the pages of a class in URL order.
+ * New pages are buffered and written in a single batch on {@link #flush()}.
+ */
+public class PageIndex implements Closeable {
+	private final static char URL = 'u', CLASS = 'c', SEP = '\0';
+	private final DB db;
+	private final Map<String, String[]> pending; // by URL, not written yet
+
+	/**
+	 * Opens the index in the given directory, creating it if missing.
+	 * @param directory the directory of the database
+	 * @throws IOException if the database cannot be opened
+	 */
+	public PageIndex(String directory) throws IOException {
+		this.db = factory.open(new File(directory), new Options().createIfMissing(true));
+		this.pending = new LinkedHashMap<>();
+	}
+
+	/**
+	 * Adds a page to the index, replacing the previous entry of the same URL.
+	 * The page is written on the next flush.
+	 * @param url the URL of the page
+	 * @param pclass the PageClass name of the page
+	 * @param file the file of the page
+	 */
+	public void put(String url, String pclass, String file) {
+		pending.put(url, new String[] {pclass, file});
+	}
+
+	/**
+	 * @return the number of pages not written yet
+	 */
+	public int pending() {
+		return pending.size();
+	}
+
+	/**
+	 * Writes the pending pages in a single batch.
+	 * @throws IOException if the batch cannot be written
+	 */
+	public void flush() throws IOException {
+		if (pending.isEmpty()) return;
+		try (WriteBatch batch = db.createWriteBatch()) {
+			for (Map.Entry<String, String[]> page : pending.entrySet()) {
+				String url = page.getKey();
+				String pclass = page.getValue()[0];
+				String[] old = decode(db.get(key(URL, url)));
+				if (old!=null && !old[0].equals(pclass))
+					batch.delete(key(CLASS, old[0]+SEP+url));
+				batch.put(key(URL, url), bytes(pclass+SEP+page.getValue()[1]));
+				batch.put(key(CLASS, pclass+SEP+url), bytes(page.getValue()[1]));
+			}
+			db.write(batch);
+		} catch (DBException e) {
+			throw new IOException("Cannot write page index: "+e.getMessage());
+		}
+		pending.clear();
+	}
+
+	/**
+	 * @param url the URL of a page
+	 * @return the PageClass name and the file of the page, or null if not indexed
+	 */
+	public String[] get(String url) {
+		String[] page = pending.get(url);
+		return (page!=null) ? page : decode(db.get(key(URL, url)));
+	}
+
+	/**
+	 * Scans the pages of the given PageClass.
+	 * @param pclass the PageClass name
+	 * @return the files of the pages of the class, by URL in ascending order
+	 * @throws IOException if the pending pages cannot be written
+	 */
+	public Map<String, String> getPages(String pclass) throws IOException {
+		flush();
+		Map<String, String> pages = new TreeMap<>();
+		byte[] prefix = key(CLASS, pclass+SEP);
+		try (DBIterator it = db.iterator()) {
+			for (it.seek(prefix); it.hasNext(); ) {
+				Map.Entry<byte[], byte[]> entry = it.next();
+				byte[] key = entry.getKey();
+				if (key.length<prefix.length ||
+					!Arrays.equals(prefix, Arrays.copyOf(key, prefix.length))) break;
+				pages.put(new String(key, prefix.length, key.length-prefix.length,
+						StandardCharsets.UTF_8), string(entry.getValue()));
+			}
+		}
+		return pages;
+	}
+
+	/**
+	 * Writes the pending pages and closes the index.
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			db.close();
+		}
+	}
+
+	private static byte[] key(char type, String key) {
+		return bytes(type+key);
+	}
+
+	private static String[] decode(byte[] value) {
+		return (value!=null) ? string(value).split(String.valueOf(SEP), 2) : null;
+	}
+
+	private static byte[] bytes(String s) {
+		return s.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static String string(byte[] b) {
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+}
@@ -0,0 +1,109 @@
+package it.uniroma3.crawler.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A RawPage is a web page downloaded as raw bytes with a plain HTTP GET request, 
+ * without any browser emulation nor DOM building.
+ * <br>
+ * The charset of the page is taken from the Content-Type header, or from the 
+ * meta tags of the page, defaulting to ISO-8859-1 as HTTP does.
+ * Connections are kept alive by the JDK between requests to the same host.
+ */
+public class RawPage {
+	private final static String USER_AGENT = "Mozilla/5.0 (compatible; smart-crawler)";
+	private final static Pattern CHARSET = 
+			Pattern.compile("charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+	private final static int SNIFF_LENGTH = 1024;
+	
+	private final URL url;
+	private final byte[] content;
+	private final Charset charset;
+	
+	public RawPage(URL url, byte[] content, Charset charset) {
+		this.url = url;
+		this.content = content;
+		this.charset = charset;
+	}
+	
+	/**
+	 * Downloads the given URL, following the redirects.
+	 * @param url the URL to fetch
+	 * @param timeout the connect and read timeout in milliseconds
+	 * @return the downloaded page
+	 * @throws IOException if an IO error occurs, or the response is not an HTML page
+	 */
+	public static RawPage fetch(String url, int timeout) throws IOException {
+		HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+		conn.setConnectTimeout(timeout);
+		conn.setReadTimeout(timeout);
+		conn.setRequestProperty("User-Agent", USER_AGENT);
+		conn.setRequestProperty("Accept", "text/html,application/xhtml+xml");
+		conn.setRequestProperty("Accept-Encoding", "gzip");
+		int code = conn.getResponseCode();
+		InputStream stream = (code<400) ? conn.getInputStream() : conn.getErrorStream();
+		if (stream==null) 
+			throw new IOException("Empty response "+code+" from "+url);
+		String contentType = conn.getContentType();
+		if (contentType!=null && !contentType.contains("html"))
+			throw new IOException("Not an HTML page: "+contentType);
+		if ("gzip".equalsIgnoreCase(conn.getContentEncoding()))
+			stream = new GZIPInputStream(stream);
+		byte[] content = readAll(stream);
+		return new RawPage(conn.getURL(), content, charset(contentType, content));
+	}
+	
+	public URL getUrl() {
+		return url;
+	}
+	
+	public byte[] getContent() {
+		return content;
+	}
+	
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	private static byte[] readAll(InputStream stream) throws IOException {
+		try (InputStream in = stream) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(16*1024);
+			byte[] buffer = new byte[8*1024];
+			int n;
+			while ((n = in.read(buffer))>0)
+				out.write(buffer, 0, n);
+			return out.toByteArray();
+		}
+	}
+	
+	static Charset charset(String contentType, byte[] content) {
+		Charset charset = (contentType!=null) ? find(contentType) : null;
+		if (charset==null) {
+			int length = Math.min(content.length, SNIFF_LENGTH);
+			charset = find(new String(content, 0, length, StandardCharsets.ISO_8859_1));
+		}
+		return (charset!=null) ? charset : StandardCharsets.ISO_8859_1;
+	}
+	
+	private static Charset find(String text) {
+		Matcher m = CHARSET.matcher(text);
+		if (m.find()) {
+			try {
+				return Charset.forName(m.group(1));
+			} catch (IllegalArgumentException e) {
+				return null;
+			}
+		}
+		return null;
+	}
+
+}
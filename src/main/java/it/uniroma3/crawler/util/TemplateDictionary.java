@@ -0,0 +1,107 @@
+package it.uniroma3.crawler.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Adler32;
+
+/**
+ * A TemplateDictionary learns the template shared by the pages of a PageClass
+ * from a sample of them, as a preset dictionary for the compression of the
+ * following pages of the same class.
+ * <br>
+ * The template is made of the lines found in at least half of the sampled pages,
+ * in the order of the first one. If the pages share too few lines (i.e. minified HTML),
+ * the first sampled page itself is the template. Only the last
+ * {@value #MAX_SIZE} bytes of the template fit in the compression window.
+ */
+class TemplateDictionary {
+	final static int MAX_SIZE = 32*1024;
+
+	private final int samples;
+	private final Map<String, List<byte[]>> sampled; // by PageClass
+	private final Map<String, byte[]> dictionaries; // by PageClass
+
+	/**
+	 * Constructs a new TemplateDictionary.
+	 * @param samples the number of pages of a PageClass to learn its template from
+	 */
+	TemplateDictionary(int samples) {
+		this.samples = samples;
+		this.sampled = new HashMap<>();
+		this.dictionaries = new HashMap<>();
+	}
+
+	/**
+	 * @param pclass the PageClass name
+	 * @return the dictionary of the given PageClass, or null if not learned yet
+	 */
+	byte[] get(String pclass) {
+		return dictionaries.get(pclass);
+	}
+
+	/**
+	 * Adds a page of the given PageClass to the sample of its class.
+	 * @param pclass the PageClass name
+	 * @param content the content of the page
+	 * @return the dictionary of the class, if it has just been learned, null otherwise
+	 */
+	byte[] sample(String pclass, byte[] content) {
+		if (dictionaries.containsKey(pclass)) return null;
+		List<byte[]> pages = sampled.computeIfAbsent(pclass, k -> new ArrayList<>());
+		pages.add(content);
+		if (pages.size()<samples) return null;
+		byte[] dictionary = learn(pages);
+		sampled.remove(pclass);
+		dictionaries.put(pclass, dictionary);
+		return dictionary;
+	}
+
+	/**
+	 * Learns the template shared by the given pages.
+	 * @param pages the sampled pages
+	 * @return the dictionary, at most {@value #MAX_SIZE} bytes long
+	 */
+	static byte[] learn(List<byte[]> pages) {
+		List<String> first = lines(pages.get(0));
+		Map<String, Integer> counts = new HashMap<>();
+		for (byte[] page : pages)
+			for (String line : new HashSet<>(lines(page)))
+				counts.merge(line, 1, Integer::sum);
+
+		int min = Math.max(1, (pages.size()+1)/2);
+		StringBuilder template = new StringBuilder();
+		Set<String> added = new HashSet<>();
+		for (String line : first)
+			if (counts.get(line)>=min && added.add(line))
+				template.append(line).append('\n');
+
+		byte[] dictionary = template.toString().getBytes(StandardCharsets.ISO_8859_1);
+		if (dictionary.length*4<pages.get(0).length) // too few shared lines
+			dictionary = pages.get(0);
+		return (dictionary.length>MAX_SIZE) ?
+				Arrays.copyOfRange(dictionary, dictionary.length-MAX_SIZE, dictionary.length) :
+				dictionary;
+	}
+
+	/**
+	 * @param dictionary a dictionary
+	 * @return the id of the dictionary, as found in the header of the streams compressed with it
+	 */
+	static long id(byte[] dictionary) {
+		Adler32 adler = new Adler32();
+		adler.update(dictionary, 0, dictionary.length);
+		return adler.getValue();
+	}
+
+	private static List<String> lines(byte[] page) {
+		// ISO-8859-1 maps each byte to a char, whatever the charset of the page
+		return Arrays.asList(new String(page, StandardCharsets.ISO_8859_1).split("\n"));
+	}
+
+}
@@ -0,0 +1,150 @@
+package it.uniroma3.crawler.util;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Reads back the pages stored by a {@link WarcWriter}, given the location
+ * <code>segment#offset</code> of their record.
+ * <br>
+ * Records compressed against a PageClass template are inflated with the dictionary
+ * named by their header, which is loaded once and kept in memory.
+ */
+public class WarcReader {
+	private final static Map<String, byte[]> dictionaries = new ConcurrentHashMap<>();
+
+	private WarcReader() {}
+
+	/**
+	 * Reads the page stored in the record at the given location.
+	 * @param location the location of the record, as returned by {@link WarcWriter#append}
+	 * @return the stored page
+	 * @throws IOException if the record cannot be read
+	 */
+	public static RawPage read(String location) throws IOException {
+		int sep = location.lastIndexOf('#');
+		if (sep<0) throw new IOException("Not a WARC record location: "+location);
+		String segment = location.substring(0, sep);
+		long offset = Long.parseLong(location.substring(sep+1));
+		try (FileInputStream file = new FileInputStream(segment)) {
+			file.getChannel().position(offset);
+			BufferedInputStream buffered = new BufferedInputStream(file);
+			buffered.mark(1);
+			int magic = buffered.read();
+			buffered.reset();
+			DataInputStream in = new DataInputStream((magic==0x1f) ?
+					new GZIPInputStream(buffered) :
+					new ByteArrayInputStream(inflate(buffered, new File(segment).getParentFile())));
+			Map<String, String> headers = readHeaders(in);
+			String length = headers.get("content-length");
+			String url = headers.get("warc-target-uri");
+			if (length==null || url==null)
+				throw new IOException("Malformed WARC record at "+location);
+			byte[] block = new byte[Integer.parseInt(length)];
+			in.readFully(block);
+			int body = indexOf(block, new byte[] {'\r','\n','\r','\n'});
+			if (body<0)
+				throw new IOException("Malformed HTTP response at "+location);
+			String http = new String(block, 0, body, StandardCharsets.ISO_8859_1);
+			byte[] content = Arrays.copyOfRange(block, body+4, block.length);
+			return new RawPage(new URL(url), content, RawPage.charset(http, content));
+		}
+	}
+
+	static String location(String segment, long offset) {
+		return segment+"#"+offset;
+	}
+
+	static File dictionaryFile(File directory, long id) {
+		return new File(directory, String.format("dict-%08x.bin", id));
+	}
+
+	/*
+	 * Inflates the zlib stream of a record compressed with a preset dictionary
+	 */
+	private static byte[] inflate(InputStream in, File directory) throws IOException {
+		Inflater inflater = new Inflater();
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(64*1024);
+			byte[] input = new byte[8*1024];
+			byte[] output = new byte[32*1024];
+			while (!inflater.finished()) {
+				int n = inflater.inflate(output);
+				out.write(output, 0, n);
+				if (inflater.needsDictionary())
+					inflater.setDictionary(dictionary(directory, inflater.getAdler() & 0xffffffffL));
+				else if (n==0 && inflater.needsInput()) {
+					int read = in.read(input);
+					if (read<0) throw new IOException("Truncated WARC record");
+					inflater.setInput(input, 0, read);
+				}
+			}
+			return out.toByteArray();
+		} catch (DataFormatException e) {
+			throw new IOException("Malformed WARC record: "+e.getMessage());
+		} finally {
+			inflater.end();
+		}
+	}
+
+	private static byte[] dictionary(File directory, long id) throws IOException {
+		File file = dictionaryFile(directory, id);
+		byte[] dictionary = dictionaries.get(file.getPath());
+		if (dictionary==null) {
+			if (!file.exists())
+				throw new IOException("Missing template dictionary "+file);
+			dictionary = Files.readAllBytes(file.toPath());
+			dictionaries.put(file.getPath(), dictionary);
+		}
+		return dictionary;
+	}
+
+	private static Map<String, String> readHeaders(InputStream in) throws IOException {
+		Map<String, String> headers = new HashMap<>();
+		String line;
+		while (!(line = readLine(in)).isEmpty()) {
+			int colon = line.indexOf(':');
+			if (colon>0)
+				headers.put(line.substring(0, colon).trim().toLowerCase(),
+						line.substring(colon+1).trim());
+		}
+		return headers;
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(128);
+		int b;
+		while ((b = in.read())!='\n') {
+			if (b<0) throw new IOException("Truncated WARC record");
+			if (b!='\r') line.write(b);
+		}
+		return new String(line.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private static int indexOf(byte[] array, byte[] target) {
+		outer:
+		for (int i=0; i<=array.length-target.length; i++) {
+			for (int j=0; j<target.length; j++)
+				if (array[i+j]!=target[j]) continue outer;
+			return i;
+		}
+		return -1;
+	}
+
+}
@@ -0,0 +1,217 @@
+package it.uniroma3.crawler.util;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A WarcWriter appends web pages as WARC response records to a rolling series
+ * of segments <code>prefix-NNNNN.warc.gz</code> in a directory.
+ * Each record is compressed as a gzip member of its own, so that it can be
+ * read back alone from its offset with a {@link WarcReader}.
+ * <br>
+ * A new segment is started when the current one exceeds the max segment size,
+ * and segments are never overwritten. The location of every record is appended to
+ * the index <code>prefix.idx</code>, as a line <code>url \t segment \t offset</code>.
+ * <br>
+ * If template samples are set, the writer learns the template of each PageClass
+ * from its first pages, and compresses the records of the following pages of the class
+ * as zlib streams with the template as preset dictionary, so that only their difference
+ * from the template takes space. The dictionaries are saved in the directory as
+ * <code>dict-XXXXXXXX.bin</code>, named by the id found in the header of the streams.
+ * <br>
+ * Such delta records are not gzip members, hence they are appended to a separate 
+ * series of segments <code>prefix-NNNNN.warc.tpl</code>: the <code>.warc.gz</code> 
+ * segments stay valid for any WARC tool, while the <code>.warc.tpl</code> ones 
+ * can only be read with a {@link WarcReader}.
+ */
+public class WarcWriter implements Closeable {
+	private final static String CRLF = "\r\n";
+	private final File directory;
+	private final String prefix;
+	private final long maxSize;
+	private final Writer index;
+	private final TemplateDictionary templates;
+	private final Segments gzip;
+	private final Segments deltas;
+
+	/*
+	 * A rolling series of segments with the same extension
+	 */
+	private class Segments {
+		private final String extension;
+		private int segment;
+		private File current;
+		private FileOutputStream out;
+		private long offset;
+
+		Segments(String extension) {
+			this.extension = extension;
+			while (file(segment).exists()) segment++;
+		}
+
+		/*
+		 * Appends a record, returning its location
+		 */
+		String append(String url, ByteArrayOutputStream record) throws IOException {
+			if (out==null || offset>=maxSize) roll();
+			long start = offset;
+			record.writeTo(out);
+			offset += record.size();
+			index.write(url+"\t"+current.getName()+"\t"+start+"\n");
+			index.flush();
+			return WarcReader.location(current.getPath(), start);
+		}
+
+		void close() throws IOException {
+			if (out!=null) out.close();
+		}
+
+		private void roll() throws IOException {
+			if (out!=null) {
+				out.close();
+				segment++;
+			}
+			current = file(segment);
+			out = new FileOutputStream(current);
+			offset = 0;
+		}
+
+		private File file(int n) {
+			return new File(directory, String.format("%s-%05d%s", prefix, n, extension));
+		}
+	}
+
+	/**
+	 * Constructs a new WarcWriter, appending to a new segment after the existing ones.
+	 * @param directory the directory of the segments
+	 * @param prefix the file name prefix of the segments, unique for each writer
+	 * @param maxSize the size in bytes after which a new segment is started
+	 * @throws IOException if the directory or the index cannot be opened
+	 */
+	public WarcWriter(String directory, String prefix, long maxSize) throws IOException {
+		this(directory, prefix, maxSize, 0);
+	}
+
+	/**
+	 * Constructs a new WarcWriter, appending to a new segment after the existing ones.
+	 * @param directory the directory of the segments
+	 * @param prefix the file name prefix of the segments, unique for each writer
+	 * @param maxSize the size in bytes after which a new segment is started
+	 * @param templateSamples the number of pages of a PageClass to learn its template from,
+	 * 0 to compress each record as plain gzip
+	 * @throws IOException if the directory or the index cannot be opened
+	 */
+	public WarcWriter(String directory, String prefix, long maxSize, int templateSamples)
+			throws IOException {
+		this.directory = new File(directory);
+		this.prefix = prefix;
+		this.maxSize = maxSize;
+		this.templates = (templateSamples>0) ? new TemplateDictionary(templateSamples) : null;
+		if (!this.directory.isDirectory() && !this.directory.mkdirs())
+			throw new IOException("Cannot create directory "+directory);
+		this.gzip = new Segments(".warc.gz");
+		this.deltas = new Segments(".warc.tpl");
+		this.index = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(new File(this.directory, prefix+".idx"), true),
+				StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Appends the given page to the current segment.
+	 * @param url the URL of the page
+	 * @param content the content of the page
+	 * @param charset the charset of the content
+	 * @return the location of the record, to be read with {@link WarcReader#read(String)}
+	 * @throws IOException if the record cannot be written
+	 */
+	public String append(String url, byte[] content, Charset charset) throws IOException {
+		return append(url, null, content, charset);
+	}
+
+	/**
+	 * Appends the given page of the given PageClass to the current segment,
+	 * compressing it against the template of its class once it has been learned
+	 * (in a <code>.warc.tpl</code> segment).
+	 * @param url the URL of the page
+	 * @param pclass the PageClass name of the page, or null if unknown
+	 * @param content the content of the page
+	 * @param charset the charset of the content
+	 * @return the location of the record, to be read with {@link WarcReader#read(String)}
+	 * @throws IOException if the record cannot be written
+	 */
+	public String append(String url, String pclass, byte[] content, Charset charset)
+			throws IOException {
+		byte[] dictionary = (templates!=null && pclass!=null) ? templates.get(pclass) : null;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(content.length/4+512);
+		if (dictionary!=null) {
+			Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+			deflater.setDictionary(dictionary);
+			try (DeflaterOutputStream zlib = new DeflaterOutputStream(buffer, deflater)) {
+				writeRecord(zlib, url, content, charset);
+			}
+			finally {
+				deflater.end();
+			}
+			return deltas.append(url, buffer);
+		}
+		try (GZIPOutputStream member = new GZIPOutputStream(buffer)) {
+			writeRecord(member, url, content, charset);
+		}
+		if (templates!=null && pclass!=null)
+			saveDictionary(templates.sample(pclass, content));
+		return gzip.append(url, buffer);
+	}
+
+	@Override
+	public void close() throws IOException {
+		gzip.close();
+		deltas.close();
+		index.close();
+	}
+
+	private void saveDictionary(byte[] dictionary) throws IOException {
+		if (dictionary==null) return;
+		File file = WarcReader.dictionaryFile(directory, TemplateDictionary.id(dictionary));
+		if (!file.exists()) {
+			File temp = File.createTempFile("dict", ".tmp", directory);
+			Files.write(temp.toPath(), dictionary);
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private void writeRecord(OutputStream record, String url, byte[] content, Charset charset)
+			throws IOException {
+		byte[] http = ("HTTP/1.1 200 OK"+CRLF
+				+"Content-Type: text/html; charset="+charset.name()+CRLF
+				+"Content-Length: "+content.length+CRLF+CRLF).getBytes(StandardCharsets.ISO_8859_1);
+		String header = "WARC/1.0"+CRLF
+				+"WARC-Type: response"+CRLF
+				+"WARC-Record-ID: <urn:uuid:"+UUID.randomUUID()+">"+CRLF
+				+"WARC-Date: "+Instant.now().truncatedTo(ChronoUnit.SECONDS)+CRLF
+				+"WARC-Target-URI: "+url+CRLF
+				+"Content-Type: application/http; msgtype=response"+CRLF
+				+"Content-Length: "+(http.length+content.length)+CRLF+CRLF;
+		record.write(header.getBytes(StandardCharsets.UTF_8));
+		record.write(http);
+		record.write(content);
+		record.write((CRLF+CRLF).getBytes(StandardCharsets.ISO_8859_1));
+	}
+
+}
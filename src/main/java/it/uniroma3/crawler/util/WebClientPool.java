@@ -0,0 +1,135 @@
+package it.uniroma3.crawler.util;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.gargoylesoftware.htmlunit.TopLevelWindow;
+import com.gargoylesoftware.htmlunit.WebClient;
+
+/**
+ * A node-local pool of idle {@link WebClient}s, keyed by host and JavaScript support.
+ * <br>
+ * A client released to the pool keeps its connections, cookies and JavaScript engine, 
+ * so the next fetch from the same host can reuse them: only its background JavaScript 
+ * jobs and the windows opened by the pages are reset. The pool holds at most 
+ * a bounded number of idle clients, and closes the ones that have been idle too long.
+ */
+public class WebClientPool {
+	private static Logger log = Logger.getLogger(WebClientPool.class.getName());
+	private final static WebClientPool pool = new WebClientPool(32, 60000);
+	
+	private final int maxIdle;
+	private final long idleTimeout;
+	private final LinkedList<Idle> idle; // from the least recently released
+	
+	private static class Idle {
+		private final String key;
+		private final WebClient client;
+		private final long since;
+		
+		private Idle(String key, WebClient client, long since) {
+			this.key = key;
+			this.client = client;
+			this.since = since;
+		}
+	}
+	
+	/**
+	 * Constructs a new WebClientPool.
+	 * @param maxIdle the max number of idle clients
+	 * @param idleTimeout milliseconds after which an idle client is closed
+	 */
+	public WebClientPool(int maxIdle, long idleTimeout) {
+		this.maxIdle = maxIdle;
+		this.idleTimeout = idleTimeout;
+		this.idle = new LinkedList<>();
+	}
+	
+	/**
+	 * @return the pool shared by the actors of this node
+	 */
+	public static WebClientPool getInstance() {
+		return pool;
+	}
+	
+	/**
+	 * Retrieves the most recently released client for the given host, 
+	 * or creates a new one.
+	 * @param host the host to fetch pages from
+	 * @param javascript true to enable JavaScript support
+	 * @return the web client, to be given back with {@link #release(String, boolean, WebClient)}
+	 */
+	public WebClient borrow(String host, boolean javascript) {
+		return borrow(host, javascript, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Gives back a client borrowed for the given host.
+	 * @param host the host the client was borrowed for
+	 * @param javascript true if the client has JavaScript support enabled
+	 * @param client the web client
+	 */
+	public void release(String host, boolean javascript, WebClient client) {
+		release(host, javascript, client, System.currentTimeMillis());
+	}
+	
+	/**
+	 * @return the number of idle clients
+	 */
+	public synchronized int size() {
+		return idle.size();
+	}
+	
+	synchronized WebClient borrow(String host, boolean javascript, long now) {
+		evict(now);
+		String key = key(host, javascript);
+		Iterator<Idle> it = idle.descendingIterator();
+		while (it.hasNext()) {
+			Idle entry = it.next();
+			if (entry.key.equals(key)) {
+				it.remove();
+				return entry.client;
+			}
+		}
+		return HtmlUtils.makeWebClient(javascript);
+	}
+	
+	synchronized void release(String host, boolean javascript, WebClient client, long now) {
+		try {
+			reset(client);
+			idle.addLast(new Idle(key(host, javascript), client, now));
+		} catch (RuntimeException e) {
+			log.log(Level.FINE, "Cannot reset web client: "+e.getMessage());
+			client.close();
+		}
+		while (idle.size()>maxIdle)
+			idle.removeFirst().client.close();
+		evict(now);
+	}
+	
+	private void evict(long now) {
+		while (!idle.isEmpty() && now-idle.getFirst().since>=idleTimeout)
+			idle.removeFirst().client.close();
+	}
+	
+	/*
+	 * Stops the JavaScript jobs of the loaded pages 
+	 * and closes the windows they opened
+	 */
+	private void reset(WebClient client) {
+		boolean first = true;
+		for (TopLevelWindow window : new ArrayList<>(client.getTopLevelWindows())) {
+			window.getJobManager().removeAllJobs();
+			if (!first) window.close();
+			first = false;
+		}
+	}
+	
+	private String key(String host, boolean javascript) {
+		return javascript+"|"+host;
+	}
+
+}
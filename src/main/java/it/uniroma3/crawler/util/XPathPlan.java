@@ -0,0 +1,138 @@
+package it.uniroma3.crawler.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+/**
+ * An XPathPlan is the compiled form of the XPaths extracted from the pages of a PageClass:
+ * each XPath is compiled once as a {@link CompiledXPath}, and all of them are
+ * evaluated together in a single traversal of the DOM.
+ * Any XPath out of the dialect of {@link CompiledXPath} is evaluated by HtmlUnit on its own.
+ * <br>
+ * Plans made only of XPaths in the dialect can also be evaluated over a {@link CompactDom}.
+ */
+public class XPathPlan {
+	private final List<String> xpaths;
+	private final List<CompiledXPath> compiled;
+	private final List<String> others;
+
+	/**
+	 * Compiles the given XPaths.
+	 * @param xpaths the XPaths to be evaluated together
+	 */
+	public XPathPlan(List<String> xpaths) {
+		this.xpaths = new ArrayList<>(xpaths);
+		this.compiled = new ArrayList<>();
+		this.others = new ArrayList<>();
+		for (String xpath : this.xpaths) {
+			CompiledXPath path = CompiledXPath.compile(xpath);
+			if (path!=null) compiled.add(path);
+			else others.add(xpath);
+		}
+	}
+
+	/**
+	 * @return the XPaths of this plan
+	 */
+	public List<String> getXPaths() {
+		return Collections.unmodifiableList(xpaths);
+	}
+
+	/**
+	 * @return true if this plan can be evaluated over a {@link CompactDom}:
+	 * all of its XPaths are compiled and none of them selects attributes
+	 */
+	public boolean isCompact() {
+		return others.isEmpty() && compiled.stream().noneMatch(CompiledXPath::selectsAttribute);
+	}
+
+	/**
+	 * Evaluates the XPaths of this plan in the given page.
+	 * @param page the HTML page
+	 * @return the nodes matched by each XPath, in document order
+	 */
+	public Map<String, List<Object>> evaluate(HtmlPage page) {
+		Map<String, List<Object>> results = new HashMap<>();
+		if (!compiled.isEmpty()) {
+			List<List<Object>> matches = new ArrayList<>();
+			for (int p=0; p<compiled.size(); p++) matches.add(new ArrayList<>());
+			long[] states = new long[compiled.size()];
+			Arrays.fill(states, 1L); // first step
+			visit(page, states, matches);
+			for (int p=0; p<compiled.size(); p++)
+				results.put(compiled.get(p).getXPath(), matches.get(p));
+		}
+		for (String xpath : others)
+			results.put(xpath, page.getByXPath(xpath));
+		return results;
+	}
+
+	/**
+	 * Evaluates the XPaths of this plan in the given DOM.
+	 * @param dom the DOM of the page
+	 * @return the nodes matched by each XPath, in document order
+	 * @throws IllegalStateException if this plan is not {@link #isCompact() compact}
+	 */
+	public Map<String, int[]> evaluate(CompactDom dom) {
+		if (!isCompact())
+			throw new IllegalStateException("XPaths not supported by CompactDom: "+others);
+		Map<String, int[]> results = new HashMap<>();
+		IntStream.Builder[] matches = new IntStream.Builder[compiled.size()];
+		for (int p=0; p<compiled.size(); p++) matches[p] = IntStream.builder();
+		long[] states = new long[compiled.size()];
+		Arrays.fill(states, 1L); // first step
+		visit(dom, CompactDom.DOCUMENT, states, matches);
+		for (int p=0; p<compiled.size(); p++)
+			results.put(compiled.get(p).getXPath(), matches[p].build().toArray());
+		return results;
+	}
+
+	private void visit(CompactDom dom, int node, long[] states, IntStream.Builder[] matches) {
+		for (int child=dom.getFirstChild(node); child>=0; child=dom.getNextSibling(child)) {
+			if (!dom.isElement(child)) continue;
+			long[] next = new long[states.length];
+			boolean active = false;
+			for (int p=0; p<states.length; p++) {
+				if (states[p]==0) continue;
+				CompiledXPath path = compiled.get(p);
+				long following = path.advance(states[p], dom, child);
+				if ((following & CompiledXPath.MATCHED)!=0) path.select(dom, child, matches[p]);
+				next[p] = following & ~CompiledXPath.MATCHED;
+				active |= next[p]!=0;
+			}
+			if (active) visit(dom, child, next, matches);
+		}
+	}
+
+	/*
+	 * Visits the children of the given node: states[p] has a bit set for each step
+	 * of the p-th path to be matched by the children
+	 */
+	private void visit(DomNode node, long[] states, List<List<Object>> matches) {
+		for (DomNode child=node.getFirstChild(); child!=null; child=child.getNextSibling()) {
+			if (!(child instanceof DomElement)) continue;
+			DomElement element = (DomElement) child;
+			long[] next = new long[states.length];
+			boolean active = false;
+			for (int p=0; p<states.length; p++) {
+				if (states[p]==0) continue;
+				CompiledXPath path = compiled.get(p);
+				long following = path.advance(states[p], element);
+				if ((following & CompiledXPath.MATCHED)!=0) path.select(element, matches.get(p));
+				next[p] = following & ~CompiledXPath.MATCHED;
+				active |= next[p]!=0;
+			}
+			if (active) visit(element, next, matches);
+		}
+	}
+
+}
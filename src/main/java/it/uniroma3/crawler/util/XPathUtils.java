@@ -9,13 +9,18 @@ import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringEscapeUtils;
 
+import com.gargoylesoftware.htmlunit.html.DomElement;
 import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.DomText;
 import com.gargoylesoftware.htmlunit.html.HtmlAnchor;
 import com.gargoylesoftware.htmlunit.html.HtmlForm;
 import com.gargoylesoftware.htmlunit.html.HtmlInput;
@@ -28,8 +33,36 @@ import com.gargoylesoftware.htmlunit.util.NameValuePair;
 
 public class XPathUtils {
 	
+	/**
+	 * Evaluates the given XPath from the given context node, 
+	 * with a {@link CompiledXPath} if the XPath is in its dialect,
+	 * or else with the XPath engine of HtmlUnit.
+	 * @param node the context node
+	 * @param xpath the XPath
+	 * @return the matching nodes, in document order
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> List<T> getByXPath(DomNode node, String xpath) {
+		CompiledXPath compiled = CompiledXPath.get(xpath);
+		return (compiled!=null) ? (List<T>) compiled.evaluate(node) : node.getByXPath(xpath);
+	}
+	
+	/**
+	 * Evaluates the given XPath in the given {@link CompactDom}.
+	 * @param dom the DOM
+	 * @param xpath an XPath in the dialect of {@link CompiledXPath}
+	 * @return the matching nodes, in document order
+	 * @throws IllegalArgumentException if the XPath is not in the dialect
+	 */
+	public static int[] getByXPath(CompactDom dom, String xpath) {
+		CompiledXPath compiled = CompiledXPath.get(xpath);
+		if (compiled==null)
+			throw new IllegalArgumentException("XPath not supported by CompactDom: "+xpath);
+		return compiled.evaluate(dom, CompactDom.DOCUMENT);
+	}
+	
 	public static boolean isMatchingXPath(HtmlPage page, String xpath) {
-		return !page.getByXPath(xpath).isEmpty();
+		return !getByXPath(page, xpath).isEmpty();
 	}
 
 	public static DomNode getFirstByXPath(HtmlPage page, String xpath) {
@@ -46,11 +79,11 @@ public class XPathUtils {
 	}
 	
 	public static List<DomNode> getByMatchingXPath(HtmlPage page, String xpath) {
-		return page.getByXPath(xpath);
+		return getByXPath(page, xpath);
 	}
 	
 	public static List<HtmlAnchor> getAnchors(HtmlPage page, String xpath) {
-		final List<HtmlAnchor> anchors = page.getByXPath(xpath);
+		final List<HtmlAnchor> anchors = getByXPath(page, xpath);
 		return anchors;
 	}
 	
@@ -64,14 +97,14 @@ public class XPathUtils {
 	 */
 	public static List<NameValuePair> getFormParameters(HtmlPage page, String formXPath) throws IOException {
 		String[] xpaths = formXPath.split(",");
-		HtmlForm form = (HtmlForm) page.getByXPath(xpaths[0]).get(0);
+		HtmlForm form = (HtmlForm) getByXPath(page, xpaths[0]).get(0);
 		
 		/* Internal API... */
 		List<NameValuePair> list = new ArrayList<>(form.getParameterListForSubmit(null));
 		
 		for (int i=1;i<xpaths.length;i++) {
 			String[] input = xpaths[i].split(":");
-			HtmlInput textInput = (HtmlInput) form.getByXPath(input[0]).get(0);
+			HtmlInput textInput = (HtmlInput) getByXPath(form, input[0]).get(0);
 			list.add(new NameValuePair(textInput.getNameAttribute(), input[1]));
 		}
 		return list;
@@ -87,7 +120,33 @@ public class XPathUtils {
 	 * @return the List of absolute URLs matched by this XPath
 	 */
 	public static List<String> getAbsoluteInternalURLs(HtmlPage page, String xpath, String url) {
-		List<String> hrefs = getRelativeURLs(page, xpath);
+		return getAbsoluteInternalURLs(getAnchors(page, xpath), url);
+	}
+	
+	/**
+	 * Resolves the hrefs of the given anchors with the given absolute URL, 
+	 * omitting the URLs not in the same domain as the URL given.
+	 * @param anchors the anchors matched by an xpath-to-link
+	 * @param url the URL to resolve the matching anchors
+	 * @return the List of absolute URLs of the anchors
+	 */
+	public static List<String> getAbsoluteInternalURLs(List<?> anchors, String url) {
+		List<String> hrefs = anchors.stream()
+				.map(a -> ((HtmlAnchor) a).getHrefAttribute()).collect(toList());
+		hrefs.removeIf(l -> !isValidURL(url, l));
+		return getAbsoluteURLs(url, hrefs);
+	}
+	
+	/**
+	 * Resolves the hrefs of the given anchors of a {@link CompactDom} with the given 
+	 * absolute URL, omitting the URLs not in the same domain as the URL given.
+	 * @param dom the DOM containing the anchors
+	 * @param anchors the anchors matched by an xpath-to-link
+	 * @param url the URL to resolve the matching anchors
+	 * @return the List of absolute URLs of the anchors
+	 */
+	public static List<String> getAbsoluteInternalURLs(CompactDom dom, int[] anchors, String url) {
+		List<String> hrefs = getRelativeURLs(dom, anchors);
 		hrefs.removeIf(l -> !isValidURL(url, l));
 		return getAbsoluteURLs(url, hrefs);
 	}
@@ -115,6 +174,32 @@ public class XPathUtils {
 		return getAnchors(page, xpath).stream().map(a -> a.getHrefAttribute()).collect(toList());
 	}
 	
+	/**
+	 * Evaluates the specified XPath-to-link in the {@link CompactDom} specified, 
+	 * returning the hrefs of the matching anchors.
+	 * @param dom the DOM of the page
+	 * @param xpath the xpath-to-link, in the dialect of {@link CompiledXPath}
+	 * @return the List of hrefs matched by this XPath
+	 */
+	public static List<String> getRelativeURLs(CompactDom dom, String xpath) {
+		return getRelativeURLs(dom, getByXPath(dom, xpath));
+	}
+	
+	/**
+	 * Returns the hrefs of the given anchors of a {@link CompactDom}.
+	 * @param dom the DOM of the page
+	 * @param anchors the anchors matched by an xpath-to-link
+	 * @return the List of hrefs of the anchors
+	 */
+	public static List<String> getRelativeURLs(CompactDom dom, int[] anchors) {
+		List<String> hrefs = new ArrayList<>();
+		for (int anchor : anchors) {
+			String href = dom.getAttribute(anchor, "href");
+			hrefs.add((href!=null) ? href : "");
+		}
+		return hrefs;
+	}
+	
 	/**
 	 * Resolve a List of relative URLs into absolute URLs
 	 * @param url the URL to resolve the matching anchors
@@ -160,6 +245,70 @@ public class XPathUtils {
 				.map(n -> formatCsv(n.getTextContent())).collect(toSet());
 	}
 	
+	/**
+	 * Returns the strings of {@link #getTexts}, each one with the only element 
+	 * whose first text, normalized as by the XPath <code>normalize-space(text())</code>, 
+	 * equals the string, all in a single traversal of the DOM.
+	 * Strings of no element or of more than one are omitted, as well as the ones
+	 * that cannot be quoted in an XPath literal.
+	 * @param page the html page
+	 * @param lengthLimit max text length
+	 * @return the elements, by string
+	 */
+	public static Map<String, DomElement> getUniqueTexts(HtmlPage page, int lengthLimit) {
+		Set<String> texts = new HashSet<>();
+		Map<String, DomElement> owners = new HashMap<>();
+		Set<String> repeated = new HashSet<>();
+		collectTexts(page, lengthLimit, texts, owners, repeated);
+		Map<String, DomElement> unique = new HashMap<>();
+		for (String text : texts) {
+			DomElement owner = owners.get(text);
+			if (owner!=null && !repeated.contains(text) && text.indexOf('\'')<0)
+				unique.put(text, owner);
+		}
+		return unique;
+	}
+	
+	/*
+	 * Visits the elements under the given node, collecting the texts as getTexts does,
+	 * and the owners of each normalized first text
+	 */
+	private static void collectTexts(DomNode node, int lengthLimit, Set<String> texts, 
+			Map<String, DomElement> owners, Set<String> repeated) {
+		for (DomNode child=node.getFirstChild(); child!=null; child=child.getNextSibling()) {
+			if (!(child instanceof DomElement)) continue;
+			DomElement element = (DomElement) child;
+			String first = null;
+			for (DomNode c=element.getFirstChild(); c!=null && first==null; c=c.getNextSibling())
+				if (c instanceof DomText) first = normalizeSpace(c.getNodeValue());
+			if (first!=null) {
+				if (owners.putIfAbsent(first, element)!=null) repeated.add(first);
+				if (!first.isEmpty() && first.length()<lengthLimit 
+						&& !(element instanceof HtmlAnchor) && !(node instanceof HtmlAnchor))
+					texts.add(formatCsv(element.getTextContent()));
+			}
+			collectTexts(element, lengthLimit, texts, owners, repeated);
+		}
+	}
+	
+	/*
+	 * Strips and collapses the whitespaces as the XPath normalize-space function
+	 */
+	private static String normalizeSpace(String s) {
+		StringBuilder normalized = new StringBuilder(s.length());
+		boolean space = false;
+		for (int i=0; i<s.length(); i++) {
+			char c = s.charAt(i);
+			if (c==' ' || c=='\t' || c=='\n' || c=='\r') space = normalized.length()>0;
+			else {
+				if (space) normalized.append(' ');
+				normalized.append(c);
+				space = false;
+			}
+		}
+		return normalized.toString();
+	}
+	
 	public static HtmlPage setInputValue(HtmlPage page, String xpath, String value) {
 		getUniqueByXPath(page,xpath).ifPresent(n -> {
 			HtmlInput input = (HtmlInput) n;
@@ -196,7 +345,7 @@ public class XPathUtils {
 	}
 
 	public static String extractByXPath(HtmlPage page, String xpath, String defaultValue) {
-		final List<?> nodes = page.getByXPath(xpath);
+		final List<?> nodes = getByXPath(page, xpath);
 		return extractStringValue(nodes, defaultValue);
 	}
 
@@ -0,0 +1,70 @@
+package it.uniroma3.crawler.actors;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConsistentHashTest {
+	private ConsistentHash<String> ring;
+
+	@Before
+	public void setUp() {
+		ring = new ConsistentHash<>(64);
+	}
+
+	@Test
+	public void testGet_emptyRing() {
+		assertTrue(ring.isEmpty());
+		assertNull(ring.get("http://localhost:8081"));
+	}
+
+	@Test
+	public void testGet_sameKeySameNode() {
+		ring.add("worker0", "worker0");
+		ring.add("worker1", "worker1");
+		ring.add("worker2", "worker2");
+
+		String url = "http://localhost:8081/detail1.html";
+		assertEquals(ring.get(url), ring.get(url));
+	}
+
+	@Test
+	public void testGet_spreadOverNodes() {
+		ring.add("worker0", "worker0");
+		ring.add("worker1", "worker1");
+		ring.add("worker2", "worker2");
+
+		Map<String, Integer> counts = new HashMap<>();
+		for (int i=0; i<3000; i++)
+			counts.merge(ring.get("http://localhost:8081/detail"+i+".html"), 1, Integer::sum);
+
+		assertEquals(3, counts.size());
+		for (int count : counts.values())
+			assertTrue(count>500);
+	}
+
+	@Test
+	public void testRemove_onlyKeysOfRemovedNodeMove() {
+		ring.add("worker0", "worker0");
+		ring.add("worker1", "worker1");
+		ring.add("worker2", "worker2");
+
+		Map<String, String> before = new HashMap<>();
+		for (int i=0; i<1000; i++) {
+			String url = "http://localhost:8081/detail"+i+".html";
+			before.put(url, ring.get(url));
+		}
+		ring.remove("worker1");
+		for (String url : before.keySet()) {
+			if (!before.get(url).equals("worker1"))
+				assertEquals(before.get(url), ring.get(url));
+			else
+				assertNotEquals("worker1", ring.get(url));
+		}
+	}
+
+}
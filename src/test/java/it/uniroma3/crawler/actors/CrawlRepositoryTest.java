@@ -13,7 +13,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
-import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -32,6 +31,7 @@ public class CrawlRepositoryTest {
 	private static ActorSystem system;
 	private static String domain;
 	private static String mirror;
+	private static String warc;
 	private static boolean js;
 
 	@BeforeClass
@@ -41,6 +41,7 @@ public class CrawlRepositoryTest {
 						+ "port = 2552, system = \"CrawlSystem\" } }"));
 		domain = "http://localhost:8081";
 		mirror = "html/localhost:8081_mirror";
+		warc = "html/localhost:8081_warc";
 		js = false;
 	}
 
@@ -49,11 +50,12 @@ public class CrawlRepositoryTest {
 	    TestKit.shutdownActorSystem(system);
 	    system = null;
 	    Files.deleteIfExists(Paths.get(mirror));
-	}
-	
-	@After
-	public void tearDown() throws Exception {
-		Files.deleteIfExists(Paths.get("src/main/resources/repository/localhost:8081.csv"));
+	    File[] segments = new File(warc).listFiles();
+	    if (segments!=null) for (File f : segments) f.delete();
+	    Files.deleteIfExists(Paths.get(warc));
+	    File[] index = new File("src/main/resources/repository/localhost:8081").listFiles();
+	    if (index!=null) for (File f : index) f.delete();
+	    Files.deleteIfExists(Paths.get("src/main/resources/repository/localhost:8081"));
 	}
 	
 	@Test
@@ -137,17 +139,14 @@ public class CrawlRepositoryTest {
 		Short response = (Short) future.get();
 		
 		assertTrue(SAVED==response);
-		File pageFile = new File(mirror+"/index.html");
-		File img = new File(mirror+"/index/fake.jpg");
-		File indexDir = new File(mirror+"/index");
-		
-		assertTrue(pageFile.exists());
-		assertTrue(indexDir.exists());
-		assertTrue(img.exists());
-		
-		pageFile.delete();
-		img.delete();
-		indexDir.delete();
+		File[] segments = new File(warc).listFiles((dir, name) -> name.endsWith(".warc.gz"));
+		
+		assertNotNull(segments);
+		assertTrue(segments.length>0);
+		boolean indexed = false;
+		for (File idx : new File(warc).listFiles((dir, name) -> name.endsWith(".idx")))
+			indexed |= Files.readAllLines(idx.toPath()).stream().anyMatch(l -> l.startsWith(domain+"\t"));
+		assertTrue(indexed);
 	}
 	
 	@Test
@@ -254,4 +253,29 @@ public class CrawlRepositoryTest {
 		new File(file).delete();
 	}
 
+	@Test
+	public void testFetchPipelined_extractionFailure() throws Exception {
+		String url = domain+"/directory2.html";
+		String detail = "//div[@id='content']/ul/li/a";
+		FetchMsg fetch = new FetchMsg(new FetchMsg(url,"dir2",domain,0,js),
+				new ExtractLinksMsg(url, Arrays.asList("//a[")), null);
+		
+		final TestActorRef<CrawlRepository> repo = 
+				TestActorRef.create(system, Props.create(CrawlRepository.class), "repoG");
+		
+		FetchedMsg fetched = (FetchedMsg) 
+				ask(repo, fetch, 4000).toCompletableFuture().get();
+		
+		assertEquals(0, fetched.getResponse());
+		assertFalse(fetched.isExtracted());
+		
+		// the page is stored anyway: the fallback extracts from it
+		Short saved = (Short) ask(repo, new SaveMsg(url), 4000).toCompletableFuture().get();
+		ExtractedLinksMsg links = (ExtractedLinksMsg) ask(repo, 
+				new ExtractLinksMsg(url, Arrays.asList(detail)), 4000).toCompletableFuture().get();
+		
+		assertTrue(SAVED==saved);
+		assertFalse(links.getLinks().get(detail).isEmpty());
+	}
+
 }
@@ -0,0 +1,50 @@
+package it.uniroma3.crawler.actors;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PendingRequestsTest {
+	private PendingRequests<String> requests;
+
+	@Before
+	public void setUp() {
+		requests = new PendingRequests<>(1000, 100, 0);
+	}
+
+	@Test
+	public void testComplete_beforeTimeout() {
+		long id = requests.add("http://localhost:8081", 0);
+
+		assertEquals("http://localhost:8081", requests.complete(id));
+		assertNull(requests.complete(id));
+		assertEquals(Collections.emptyList(), requests.expire(2000));
+		assertEquals(0, requests.size());
+	}
+
+	@Test
+	public void testExpire_afterTimeout() {
+		requests.add("http://localhost:8081", 0);
+		long id = requests.add("http://localhost:8081/detail1.html", 500);
+
+		assertEquals(Collections.emptyList(), requests.expire(900));
+		assertEquals(Arrays.asList("http://localhost:8081"), requests.expire(1000));
+		assertEquals(1, requests.size());
+		assertEquals(Arrays.asList("http://localhost:8081/detail1.html"), requests.expire(1500));
+		assertNull(requests.complete(id));
+	}
+
+	@Test
+	public void testAdd_distinctIds() {
+		long id1 = requests.add("http://localhost:8081", 0);
+		long id2 = requests.add("http://localhost:8081", 0);
+
+		assertNotEquals(id1, id2);
+		assertEquals(2, requests.size());
+	}
+
+}
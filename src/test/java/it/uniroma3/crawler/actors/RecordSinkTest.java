@@ -0,0 +1,102 @@
+package it.uniroma3.crawler.actors;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class RecordSinkTest {
+	private final static File DIRECTORY = new File("target/records_test");
+	private final static String[] HEADER = {"URL", "title"};
+
+	@After
+	public void tearDown() {
+		File[] files = DIRECTORY.listFiles();
+		if (files!=null) for (File f : files) f.delete();
+		DIRECTORY.delete();
+	}
+
+	@Test
+	public void testWrite_bufferedUntilFlush() throws Exception {
+		DIRECTORY.mkdirs();
+		File file = new File(DIRECTORY, "detail.csv");
+		try (RecordSink sink = new RecordSink(DIRECTORY, "detail", HEADER, 1024, false, 0)) {
+			sink.write(new String[] {"http://localhost:8081/detail1.html", "One"});
+			assertEquals(0, file.length());
+			sink.flush();
+			List<String> lines = Files.readAllLines(file.toPath());
+			assertEquals(2, lines.size());
+			assertEquals("URL\ttitle", lines.get(0));
+			assertEquals("http://localhost:8081/detail1.html\tOne", lines.get(1));
+		}
+	}
+
+	@Test
+	public void testWrite_reopenAppendsWithoutHeader() throws Exception {
+		DIRECTORY.mkdirs();
+		try (RecordSink sink = new RecordSink(DIRECTORY, "detail", HEADER, 1024, false, 0)) {
+			sink.write(new String[] {"http://localhost:8081/detail1.html", "One"});
+		}
+		try (RecordSink sink = new RecordSink(DIRECTORY, "detail", HEADER, 1024, false, 0)) {
+			sink.write(new String[] {"http://localhost:8081/detail2.html", "Two"});
+		}
+		List<String> lines = Files.readAllLines(new File(DIRECTORY, "detail.csv").toPath());
+
+		assertEquals(3, lines.size());
+		assertEquals("http://localhost:8081/detail2.html\tTwo", lines.get(2));
+	}
+
+	@Test
+	public void testWrite_gzipRolling() throws Exception {
+		DIRECTORY.mkdirs();
+		try (RecordSink sink = new RecordSink(DIRECTORY, "detail", HEADER, 1024, true, 50)) {
+			for (int i=0; i<3; i++) {
+				sink.write(new String[] {"http://localhost:8081/detail"+i+".html", "Title"});
+				sink.flush();
+			}
+		}
+
+		assertTrue(new File(DIRECTORY, "detail.csv.gz").exists());
+		assertTrue(new File(DIRECTORY, "detail-2.csv.gz").exists());
+		assertEquals("URL\ttitle\nhttp://localhost:8081/detail2.html\tTitle\n",
+				gunzip(new File(DIRECTORY, "detail-2.csv.gz")));
+	}
+
+	@Test
+	public void testWrite_reopenedGzipKeepsSizeOnDisk() throws Exception {
+		DIRECTORY.mkdirs();
+		File file = new File(DIRECTORY, "detail.csv.gz");
+		try (RecordSink sink = new RecordSink(DIRECTORY, "detail", HEADER, 1024, true, 0)) {
+			sink.write(new String[] {"http://localhost:8081/detail1.html", "One"});
+		}
+		long length = file.length();
+		// the part is full, measured in compressed bytes as while writing it
+		try (RecordSink sink = new RecordSink(DIRECTORY, "detail", HEADER, 1024, true, length)) {
+			sink.write(new String[] {"http://localhost:8081/detail2.html", "Two"});
+		}
+
+		assertEquals(length, file.length());
+		assertEquals("URL\ttitle\nhttp://localhost:8081/detail2.html\tTwo\n",
+				gunzip(new File(DIRECTORY, "detail-1.csv.gz")));
+	}
+
+	private static String gunzip(File file) throws Exception {
+		try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[1024];
+			int n;
+			while ((n = in.read(buffer))>0) out.write(buffer, 0, n);
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+}
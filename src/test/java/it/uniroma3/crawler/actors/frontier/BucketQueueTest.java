@@ -0,0 +1,82 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BucketQueueTest {
+	private BucketQueue<String> queue;
+
+	@Before
+	public void setUp() {
+		queue = new BucketQueue<>();
+	}
+
+	@Test
+	public void testPollFirst_priorityThenInsertionOrder() {
+		queue.add(2, "2b");
+		queue.add(0, "0a");
+		queue.add(2, "2a");
+		queue.add(1, "1a");
+
+		assertEquals("0a", queue.first());
+		assertEquals(0, queue.firstPriority());
+		assertEquals("0a", queue.pollFirst());
+		assertEquals("1a", queue.pollFirst());
+		assertEquals("2b", queue.pollFirst());
+		assertEquals("2a", queue.pollFirst());
+		assertNull(queue.pollFirst());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testPollLast_lastInsertedOfLowestPriority() {
+		queue.add(3, "3a");
+		queue.add(0, "0a");
+		queue.add(3, "3b");
+
+		assertEquals("3b", queue.last());
+		assertEquals(3, queue.lastPriority());
+		assertEquals("3b", queue.pollLast());
+		assertEquals("3a", queue.pollLast());
+		assertEquals("0a", queue.last());
+		assertEquals(0, queue.lastPriority());
+		assertEquals(1, queue.size());
+	}
+
+	@Test
+	public void testAdd_growRingBuffer() {
+		for (int i=0; i<10; i++)
+			queue.add(1, "1_"+i);
+		for (int i=0; i<5; i++)
+			queue.pollFirst();
+		for (int i=10; i<100; i++)
+			queue.add(1, "1_"+i);
+
+		assertEquals(95, queue.size());
+		for (int i=5; i<100; i++)
+			assertEquals("1_"+i, queue.pollFirst());
+	}
+
+	@Test
+	public void testForEach_inPollOrder() {
+		queue.add(2, "2a");
+		queue.add(1, "1a");
+		queue.add(1, "1b");
+		queue.add(5, "5a");
+		queue.pollLast();
+		List<String> elements = new ArrayList<>();
+		queue.forEach((e, p) -> elements.add(p+":"+e));
+
+		assertEquals(Arrays.asList("1:1a", "1:1b", "2:2a"), elements);
+		queue.clear();
+		queue.forEach((e, p) -> fail());
+		assertNull(queue.first());
+	}
+
+}
@@ -0,0 +1,70 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static org.junit.Assert.*;
+import static it.uniroma3.crawler.factories.CrawlURLFactory.getCrawlUrl;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.model.PageClass;
+
+public class CompactQueueTest {
+	private CompactQueue queue;
+	private PageClass pclass, pclass2;
+
+	@Before
+	public void setUp() {
+		String website = "http://localhost";
+		pclass = new PageClass("class1",website);
+		pclass2 = new PageClass("class2",website);
+		pclass.addPageClassLink("//a", pclass2);
+		pclass.setHierarchy();
+		queue = new CompactQueue(pclass);
+	}
+
+	@Test
+	public void testPollFirst_sameCrawlURL() {
+		CrawlURL curl1 = getCrawlUrl("http://localhost",pclass);
+		CrawlURL curl2 = getCrawlUrl("http://localhost/search>q=test;",pclass2);
+		CrawlURL curl3 = getCrawlUrl("http://127.0.0.1/directory?query=true",pclass2);
+		queue.add(curl3);
+		queue.add(curl2);
+		queue.add(curl1);
+
+		assertEquals(curl1, queue.first());
+		assertEquals(curl1, queue.pollFirst());
+		assertEquals(curl3, queue.pollFirst());
+		CrawlURL form = queue.pollFirst();
+		assertEquals(curl2, form);
+		assertSame(pclass2, form.getPageClass());
+		assertEquals("test", form.getFormParameters().get(0).getValue());
+		assertTrue(queue.isEmpty());
+	}
+
+	@Test
+	public void testExchange_evictLowestPriority() {
+		CrawlURL curl1 = getCrawlUrl("http://localhost/1",pclass2);
+		CrawlURL curl2 = getCrawlUrl("http://localhost/2",pclass2);
+		CrawlURL curl3 = getCrawlUrl("http://localhost/3",pclass);
+		queue.add(curl1);
+
+		assertEquals(curl2, queue.exchange(curl2));
+		assertEquals(curl1, queue.exchange(curl3));
+		assertEquals(curl3, queue.first());
+		assertEquals(1, queue.size());
+	}
+
+	@Test
+	public void testEntries_absoluteUrlsAndClassNames() {
+		queue.add(getCrawlUrl("http://localhost/2",pclass2));
+		queue.add(getCrawlUrl("http://localhost",pclass));
+		List<String[]> entries = queue.entries();
+
+		assertArrayEquals(new String[]{"http://localhost", "class1"}, entries.get(0));
+		assertArrayEquals(new String[]{"http://localhost/2", "class2"}, entries.get(1));
+	}
+
+}
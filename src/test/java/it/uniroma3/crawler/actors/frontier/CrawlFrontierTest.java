@@ -0,0 +1,28 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static org.junit.Assert.*;
+import static it.uniroma3.crawler.factories.CrawlURLFactory.copy;
+import static it.uniroma3.crawler.factories.CrawlURLFactory.getCrawlUrl;
+
+import org.junit.Test;
+
+import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.model.PageClass;
+
+public class CrawlFrontierTest {
+
+	@Test
+	public void testKey_formUrlCompletedByCopy() {
+		PageClass pclass = new PageClass("class1","http://localhost");
+		CrawlURL form = getCrawlUrl("http://localhost/search>q=test;page=2",pclass);
+		CrawlURL other = getCrawlUrl("http://localhost/search>q=test;page=3",pclass);
+		// the extractor completes a URL with a copy of the leased one
+		CrawlURL completed = copy(form);
+
+		assertEquals(form, completed);
+		assertEquals(2, completed.getFormParameters().size());
+		assertEquals(CrawlFrontier.key(form), CrawlFrontier.key(completed));
+		assertNotEquals(CrawlFrontier.key(form), CrawlFrontier.key(other));
+	}
+
+}
@@ -3,13 +3,14 @@ package it.uniroma3.crawler.actors.frontier;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
-import com.csvreader.CsvReader;
-
 import it.uniroma3.crawler.model.CrawlURL;
 import it.uniroma3.crawler.model.PageClass;
 
@@ -22,7 +23,7 @@ public class CrawlQueueTest {
 	
 	@Before
 	public void setUp() {
-		storage = "src/main/resources/storage/queue_localhost.csv";
+		storage = "src/main/resources/storage/queue_localhost";
 		String website = "http://localhost";
 		pclass = new PageClass("class1",website);
 		pclass2 = new PageClass("class2",website);
@@ -32,6 +33,7 @@ public class CrawlQueueTest {
 		pclass3.setDepth(2);
 		pclass.addPageClassLink("//a", pclass2);
 		pclass2.addPageClassLink("//a", pclass3);
+		pclass.setHierarchy();
 	}
 	
 	@After
@@ -117,21 +119,78 @@ public class CrawlQueueTest {
 	
 	@Test
 	public void testAdd_storeOnFile() throws IOException {
+		queue = new CrawlQueue(2, pclass, 8*1024*1024, true);
+
+		CrawlURL curl1 = getCrawlUrl("http://localhost",pclass);
+		CrawlURL curl2 = getCrawlUrl("http://localhost/test",pclass);
+		CrawlURL curl3 = getCrawlUrl("http://localhost/directory",pclass);
+		
+		queue.add(curl1);
+		queue.add(curl2);
+		queue.add(curl3);
+		
+		assertTrue(Files.isDirectory(Paths.get(storage)));
+		assertEquals(3, queue.size());
+		assertEquals(curl1, queue.next());
+		assertEquals(curl3, queue.next());
+		assertEquals(curl2, queue.next()); // from storage
+		assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testNext_sortedFocusedOnTargets() throws IOException {
+		pclass.setTargets(Arrays.asList("class3")); // class3, then class2, then class1
+		queue = new CrawlQueue(2, pclass, 8*1024*1024, true);
+
+		CrawlURL seed = getCrawlUrl("http://localhost",pclass);
+		CrawlURL curl2 = getCrawlUrl("http://localhost/list",pclass2);
+		CrawlURL curl3 = getCrawlUrl("http://localhost/detail",pclass3);
+		
+		queue.add(curl2);
+		queue.add(curl3); // the seed is evicted to storage
+		
+		assertEquals(3, queue.size());
+		assertEquals(curl3, queue.next());
+		assertEquals(curl2, queue.next());
+		assertEquals(seed, queue.next()); // from storage
+		assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testAdd_storeOnFile_insertionOrder() throws IOException {
 		queue = new CrawlQueue(2, pclass);
 
 		CrawlURL curl1 = getCrawlUrl("http://localhost",pclass);
 		CrawlURL curl2 = getCrawlUrl("http://localhost/test",pclass);
 		CrawlURL curl3 = getCrawlUrl("http://localhost/directory",pclass);
+		CrawlURL curl4 = getCrawlUrl("http://localhost/index",pclass2);
 		
 		queue.add(curl1);
 		queue.add(curl2);
+		queue.add(curl4);
 		queue.add(curl3);
 		
-		CsvReader reader = new CsvReader(storage, '\t');
-		reader.readRecord();
-		assertEquals(curl2.getRelativeUrl(), reader.get(0));
-		assertEquals(pclass.getName(), reader.get(1));
-		reader.close();
+		assertEquals(4, queue.size());
+		assertEquals(curl1, queue.next());
+		assertEquals(curl2, queue.next());
+		assertEquals(curl3, queue.next()); // from storage
+		assertEquals(curl4, queue.next()); // from storage
+		assertTrue(queue.isEmpty());
+	}
+	
+	@Test
+	public void testAdd_storeOnFile_urlsWithQuery() {
+		queue = new CrawlQueue(1, pclass);
+
+		CrawlURL curl1 = getCrawlUrl("http://localhost/directory?query=true&test=1",pclass2);
+		CrawlURL curl2 = getCrawlUrl("http://localhost/search>q=test;",pclass2);
+		
+		queue.add(curl1);
+		queue.add(curl2);
+		
+		queue.next(); // remove seed
+		assertEquals(curl1, queue.next());
+		assertEquals(curl2, queue.next());
 	}
 	
 	@Test
@@ -167,16 +226,16 @@ public class CrawlQueueTest {
 		queue.add(curl4);
 		queue.add(curl3);
 		
-		/* When max=1 policy is FIFO */
+		/* Stored URLs are retrieved by PageClass depth */
 		assertEquals(curl1,queue.next());
+		assertEquals(curl3,queue.next());
 		assertEquals(curl2,queue.next());
 		assertEquals(curl4,queue.next());
-		assertEquals(curl3,queue.next());
 	}
 	
 	@Test
 	public void testNext_retrieveFromFile2() {
-		queue = new CrawlQueue(4, pclass);
+		queue = new CrawlQueue(4, pclass, 8*1024*1024, true);
 
 		CrawlURL curl1 = getCrawlUrl("http://localhost",pclass);
 		CrawlURL curl2 = getCrawlUrl("http://localhost/2",pclass2);
@@ -213,5 +272,32 @@ public class CrawlQueueTest {
 		assertEquals(curl3, queue.next());
 		assertEquals(curl10, queue.next());
 	}
+	
+	@Test
+	public void testSnapshot_restore() throws IOException {
+		queue = new CrawlQueue(1, pclass);
+		CrawlURL curl1 = getCrawlUrl("http://localhost",pclass);
+		CrawlURL curl2 = getCrawlUrl("http://localhost/2",pclass2);
+		CrawlURL curl3 = getCrawlUrl("http://localhost/3",pclass3);
+		queue.add(curl2);
+		queue.add(curl3);
+		
+		CrawlQueue.State state = queue.snapshot();
+		
+		assertEquals(curl1, queue.next());
+		assertEquals(curl2, queue.next());
+		queue.add(getCrawlUrl("http://localhost/4",pclass2));
+		queue.add(getCrawlUrl("http://localhost/5",pclass2));
+		
+		queue = new CrawlQueue(1, pclass);
+		queue.restore(state);
+		
+		assertEquals(3, queue.size());
+		assertFalse(queue.add(curl3));
+		assertEquals(curl1, queue.next());
+		assertEquals(curl2, queue.next());
+		assertEquals(curl3, queue.next());
+		assertTrue(queue.add(getCrawlUrl("http://localhost/4",pclass2)));
+	}
 
 }
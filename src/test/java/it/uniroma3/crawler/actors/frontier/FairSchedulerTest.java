@@ -0,0 +1,65 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class FairSchedulerTest {
+	private FairScheduler<String> scheduler;
+
+	@Before
+	public void setUp() {
+		scheduler = new FairScheduler<>();
+	}
+
+	@Test
+	public void testNext_sharesByWeight() {
+		scheduler.add("site1", 2);
+		scheduler.add("site2", 1);
+		int site1 = 0;
+		for (int i=0; i<30; i++)
+			if (scheduler.next().equals("site1")) site1++;
+
+		assertEquals(20, site1);
+	}
+
+	@Test
+	public void testNext_skipsNotReady() {
+		scheduler.add("site1", 1);
+		scheduler.add("site2", 1);
+		scheduler.setReady("site1", false);
+
+		assertEquals("site2", scheduler.next());
+		assertEquals("site2", scheduler.next());
+		scheduler.setReady("site2", false);
+		assertFalse(scheduler.hasReady());
+		assertNull(scheduler.next());
+	}
+
+	@Test
+	public void testSetReady_noCreditWhileNotReady() {
+		scheduler.add("site1", 1);
+		scheduler.add("site2", 1);
+		scheduler.setReady("site1", false);
+		for (int i=0; i<10; i++)
+			scheduler.next();
+		scheduler.setReady("site1", true);
+		int site1 = 0;
+		for (int i=0; i<10; i++)
+			if (scheduler.next().equals("site1")) site1++;
+
+		assertTrue(site1>=5 && site1<=6);
+	}
+
+	@Test
+	public void testRefund_servedAgain() {
+		scheduler.add("site1", 1);
+		scheduler.add("site2", 1);
+		String first = scheduler.next();
+		scheduler.refund(first);
+
+		assertEquals(first, scheduler.next());
+	}
+
+}
@@ -0,0 +1,101 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FingerprintSetTest {
+	private String storage;
+	private FingerprintSet visited;
+
+	@Before
+	public void setUp() {
+		storage = "src/main/resources/storage/visited_test";
+		visited = new FingerprintSet(8*1024, storage);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		visited.delete();
+	}
+
+	@Test
+	public void testAdd_duplicates() throws IOException {
+		assertTrue(visited.add("/test"));
+		assertFalse(visited.add("/test"));
+		assertTrue(visited.add("/test2"));
+		assertEquals(2, visited.size());
+	}
+
+	@Test
+	public void testFingerprint_stable() {
+		assertEquals(FingerprintSet.fingerprint("/directory?query=true"),
+				FingerprintSet.fingerprint("/directory?query=true"));
+		assertNotEquals(FingerprintSet.fingerprint("/directory"),
+				FingerprintSet.fingerprint("/directory/"));
+	}
+
+	@Test
+	public void testAdd_spillOnDisk() throws IOException {
+		for (int i=0; i<10000; i++)
+			assertTrue(visited.add("/page"+i));
+
+		assertTrue(Files.exists(Paths.get(storage)));
+		assertEquals(10000, visited.size());
+		for (int i=0; i<10000; i++) {
+			assertTrue(visited.contains("/page"+i));
+			assertFalse(visited.add("/page"+i));
+		}
+		assertFalse(visited.contains("/page10000"));
+	}
+
+	@Test
+	public void testAdd_mergeRuns() throws IOException {
+		for (int i=0; i<100000; i++)
+			visited.add("/page"+i);
+
+		assertEquals(100000, visited.size());
+		// at most 3 runs for each size tier
+		assertTrue(Files.list(Paths.get(storage)).count()<=12);
+		for (int i=0; i<100000; i+=7)
+			assertFalse(visited.add("/page"+i));
+	}
+
+	@Test
+	public void testAdd_mergeRunsOfSameTier() throws IOException {
+		// the runs take the whole budget: each spill holds 3/4 of the minimum table
+		for (int i=0; i<3*768; i++)
+			visited.add("/page"+i);
+		assertEquals(3, Files.list(Paths.get(storage)).count());
+
+		for (int i=3*768; i<4*768; i++)
+			visited.add("/page"+i);
+		assertEquals(1, Files.list(Paths.get(storage)).count());
+		for (int i=0; i<4*768; i++)
+			assertTrue(visited.contains("/page"+i));
+	}
+
+	@Test
+	public void testSnapshot_restore() throws IOException {
+		for (int i=0; i<5000; i++)
+			visited.add("/page"+i);
+		FingerprintSet.State state = visited.snapshot();
+		for (int i=5000; i<50000; i++)
+			visited.add("/page"+i);
+
+		visited = new FingerprintSet(8*1024, storage);
+		visited.restore(state);
+
+		assertEquals(5000, visited.size());
+		for (int i=0; i<5000; i++)
+			assertTrue(visited.contains("/page"+i));
+		assertTrue(visited.add("/page5000"));
+	}
+
+}
@@ -0,0 +1,61 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static org.junit.Assert.*;
+import static it.uniroma3.crawler.factories.CrawlURLFactory.copy;
+import static it.uniroma3.crawler.factories.CrawlURLFactory.getCrawlUrl;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import it.uniroma3.crawler.model.CrawlURL;
+import it.uniroma3.crawler.model.PageClass;
+
+public class LeaseTableTest {
+	private LeaseTable leases;
+	private PageClass pclass;
+
+	@Before
+	public void setUp() {
+		pclass = new PageClass("class1","http://localhost");
+		leases = new LeaseTable(50, 512, 0);
+	}
+
+	@Test
+	public void testExpire_completedFormUrl() {
+		CrawlURL form = getCrawlUrl("http://localhost/search>q=test;",pclass);
+		leases.lease(form, 1000);
+		assertEquals(form, leases.remove(CrawlFrontier.key(copy(form))));
+
+		assertEquals(Collections.emptyList(), leases.expire(2000));
+		assertEquals(0, leases.size());
+	}
+
+	@Test
+	public void testExpire_onlyOnce() {
+		CrawlURL form = getCrawlUrl("http://localhost/search>q=test;",pclass);
+		CrawlURL url = getCrawlUrl("http://localhost/list",pclass);
+		leases.lease(form, 1000);
+		leases.lease(url, 1000);
+
+		assertEquals(Collections.emptyList(), leases.expire(900));
+		assertEquals(Arrays.asList(form, url), leases.expire(1100));
+		assertEquals(Collections.emptyList(), leases.expire(400000));
+		assertEquals(0, leases.size());
+	}
+
+	@Test
+	public void testExpire_releasedWithLaterDeadline() {
+		CrawlURL url = getCrawlUrl("http://localhost/list",pclass);
+		leases.lease(url, 1000);
+		leases.lease(url, 5000);
+		leases.lease(getCrawlUrl("http://localhost/recovered",pclass), 0);
+
+		assertEquals(Collections.emptyList(), leases.expire(1100));
+		assertEquals(Arrays.asList(url), leases.expire(5100));
+		assertEquals(1, leases.size());
+	}
+
+}
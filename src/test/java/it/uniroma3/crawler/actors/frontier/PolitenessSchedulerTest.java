@@ -0,0 +1,71 @@
+package it.uniroma3.crawler.actors.frontier;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PolitenessSchedulerTest {
+	private PolitenessScheduler<String> scheduler;
+
+	@Before
+	public void setUp() {
+		scheduler = new PolitenessScheduler<>(10, 8, 0);
+	}
+
+	@Test
+	public void testReserve_dueHost() {
+		assertEquals(0, scheduler.reserve("localhost", 0, 100));
+		assertEquals(100, scheduler.nextAllowed("localhost"));
+		assertEquals(150, scheduler.reserve("localhost", 150, 100));
+		assertEquals(250, scheduler.nextAllowed("localhost"));
+	}
+
+	@Test
+	public void testReserve_differentHosts() {
+		assertEquals(0, scheduler.reserve("localhost", 0, 100));
+		assertEquals(0, scheduler.reserve("127.0.0.1", 0, 100));
+		assertEquals(Long.MIN_VALUE, scheduler.nextAllowed("example.com"));
+	}
+
+	@Test
+	public void testReserve_consecutiveSlots() {
+		assertEquals(0, scheduler.reserve("localhost", 0, 100));
+		assertEquals(100, scheduler.reserve("localhost", 0, 100));
+		assertEquals(200, scheduler.reserve("localhost", 50, 100));
+		assertEquals(50, scheduler.reserve("127.0.0.1", 50, 100));
+		assertEquals(300, scheduler.nextAllowed("localhost"));
+	}
+
+	@Test
+	public void testPark_dueAtNextAllowedTime() {
+		scheduler.reserve("localhost", 0, 100);
+		scheduler.park("localhost", "fetcher0");
+
+		assertEquals(Collections.emptyList(), scheduler.advance(90));
+		assertEquals(Arrays.asList("fetcher0"), scheduler.advance(100));
+		assertEquals(0, scheduler.size());
+	}
+
+	@Test
+	public void testSchedule_moreRoundsThanWheel() {
+		scheduler.schedule(250, "fetcher1");
+		scheduler.schedule(30, "fetcher0");
+
+		assertEquals(Arrays.asList("fetcher0"), scheduler.advance(100));
+		assertEquals(Collections.emptyList(), scheduler.advance(240));
+		assertEquals(Arrays.asList("fetcher1"), scheduler.advance(250));
+	}
+
+	@Test
+	public void testSchedule_pastDeadline() {
+		scheduler.advance(500);
+		scheduler.schedule(100, "fetcher0");
+
+		assertEquals(Arrays.asList("fetcher0"), scheduler.advance(520));
+	}
+
+}
@@ -145,6 +145,31 @@ public class PageClassTest {
 		assertEquals(dest6, page.getDescendant(dest6.getName()));
 	}
 	
+	@Test
+	public void testSetTargets() {
+		PageClass list = new PageClass("list",website);
+		PageClass product = new PageClass("product",website);
+		PageClass about = new PageClass("about",website);
+		PageClass contact = new PageClass("contact",website);
+		
+		page.addPageClassLink("//ul", list);
+		page.addPageClassLink("//div", about);
+		list.addPageClassLink("//a", product);
+		list.addPageClassLink("//li", list);
+		about.addPageClassLink("//a", contact);
+		page.setHierarchy();
+		page.setTargets(Arrays.asList("product"));
+		
+		assertTrue(page.isRelevant());
+		assertTrue(list.isRelevant());
+		assertTrue(product.isRelevant());
+		assertFalse(about.isRelevant());
+		assertFalse(contact.isRelevant());
+		assertEquals(0, product.getPriority());
+		assertEquals(1, list.getPriority());
+		assertEquals(2, page.getPriority());
+	}
+	
 	@Test
 	public void testAddMenu() {
 		String menuXPath = "//div[@id=\"menu\"]";
@@ -0,0 +1,45 @@
+package it.uniroma3.crawler.modeler.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlAnchor;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+import it.uniroma3.crawler.util.HtmlUtils;
+
+public class PageTest {
+
+	@Test
+	public void testPageSchema_sameAsXPaths() throws Exception {
+		WebClient client = HtmlUtils.makeWebClient(false);
+		for (String url : new String[] {"http://localhost:8081/index.html",
+				"http://localhost:8081/directory1.html", "http://localhost:8081/detail1.html",
+				"http://localhost:8081/table.html"}) {
+			HtmlPage html = client.getPage(url);
+			// one collection for each XPath of an anchor, evaluated on its own by HtmlUnit
+			Map<String, List<String>> expected = new HashMap<>();
+			for (HtmlAnchor anchor : html.getAnchors()) {
+				String path = new XPath(anchor).getDefault();
+				List<String> hrefs = new ArrayList<>();
+				for (Object node : html.getByXPath(path))
+					hrefs.add(((HtmlAnchor) node).getHrefAttribute());
+				expected.put(path, hrefs);
+			}
+			Map<String, List<String>> collections = new HashMap<>();
+			for (LinkCollection lc : new Page(url, html).getLinkCollections())
+				collections.put(lc.getXPath().getDefault(), lc.getLinks());
+
+			assertEquals(url, expected, collections);
+		}
+		client.close();
+	}
+
+}
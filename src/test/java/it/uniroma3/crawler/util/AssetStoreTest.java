@@ -0,0 +1,53 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class AssetStoreTest {
+	private final static String DIRECTORY = "target/assets_test";
+
+	@After
+	public void tearDown() {
+		File dir = new File(DIRECTORY);
+		File[] files = dir.listFiles();
+		if (files!=null) for (File f : files) f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testStore_sameContentSameFile() throws Exception {
+		AssetStore store = new AssetStore(DIRECTORY);
+		byte[] logo = "fake logo".getBytes(StandardCharsets.UTF_8);
+		String file1 = store.store("http://localhost:8081/img/logo.png", logo);
+		String file2 = store.store("http://localhost:8081/static/logo.PNG?v=2", logo);
+
+		assertEquals(file1, file2);
+		assertTrue(file1.endsWith(".png"));
+		assertEquals(1, new File(DIRECTORY).listFiles((dir, name) -> !name.endsWith(".idx")).length);
+	}
+
+	@Test
+	public void testStore_differentContentDifferentFile() throws Exception {
+		AssetStore store = new AssetStore(DIRECTORY);
+		String file1 = store.store("http://localhost:8081/fake1.jpg", new byte[] {1});
+		String file2 = store.store("http://localhost:8081/fake2.jpg", new byte[] {2});
+
+		assertNotEquals(file1, file2);
+	}
+
+	@Test
+	public void testSave_fetchedOnce() throws Exception {
+		AssetStore store = new AssetStore(DIRECTORY);
+		String file = store.store("http://localhost:8081/fake.jpg", new byte[] {1});
+
+		assertEquals(file, store.save("http://localhost:8081/fake.jpg"));
+		assertEquals(file, new AssetStore(DIRECTORY).getFile("http://localhost:8081/fake.jpg"));
+		assertNull(store.getFile("http://localhost:8081/other.jpg"));
+	}
+
+}
@@ -0,0 +1,115 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+import it.uniroma3.crawler.model.DataType;
+import it.uniroma3.crawler.model.StringDataType;
+import it.uniroma3.crawler.model.UrlDataType;
+
+public class CompactDomTest {
+
+	private static String path(CompactDom dom, int node) {
+		String path = "";
+		for (int n=node; n!=CompactDom.DOCUMENT; n=dom.getParent(n))
+			path = "/"+((dom.isText(n)) ? "text()" : dom.getTagName(n))+path;
+		return path;
+	}
+
+	private static int find(CompactDom dom, String tag, int nth) {
+		for (int n=0; n<dom.size(); n++)
+			if (tag.equals(dom.getTagName(n)) && nth--==0) return n;
+		return -1;
+	}
+
+	@Test
+	public void testParse_impliedStructure() {
+		CompactDom dom = CompactDom.parse("<!DOCTYPE html><title>Test</title>"
+				+ "<ul><li>One<li>Two</ul><table><tr><td>A<td>B</table><p>Par<div>Block</div>");
+
+		assertEquals("/html/head/title/text()", path(dom, find(dom, "title", 0)+1));
+		assertEquals("/html/body/ul/li", path(dom, find(dom, "li", 1)));
+		assertEquals(find(dom, "ul", 0), dom.getParent(find(dom, "li", 1)));
+		assertEquals("/html/body/table/tbody/tr/td", path(dom, find(dom, "td", 1)));
+		assertEquals("/html/body/div", path(dom, find(dom, "div", 0)));
+		assertEquals("Par", dom.getTextContent(find(dom, "p", 0)));
+	}
+
+	@Test
+	public void testParse_attributesAndText() {
+		CompactDom dom = CompactDom.parse("<html><body><!-- <a href='no'> -->"
+				+ "<a HREF=\"/a?x=1&amp;y=2\" class=c class=d data-x>Tom &amp; Jerry&nbsp;</a>"
+				+ "<script>if (a<b) document.write('<a>');</script><br/><img src=i.png></body></html>");
+		int a = find(dom, "a", 0);
+
+		assertEquals(-1, find(dom, "a", 1));
+		assertEquals(3, dom.getAttributeCount(a));
+		assertEquals("/a?x=1&y=2", dom.getAttribute(a, "href"));
+		assertEquals("c", dom.getAttribute(a, "class"));
+		assertTrue(dom.hasAttribute(a, "data-x"));
+		assertNull(dom.getAttribute(a, "title"));
+		assertEquals("Tom & Jerry ", dom.getText(dom.getFirstChild(a)));
+		assertEquals("if (a<b) document.write('<a>');", dom.getTextContent(find(dom, "script", 0)));
+		assertEquals(find(dom, "img", 0), dom.getNextSibling(find(dom, "br", 0)));
+		assertEquals(-1, dom.getFirstChild(find(dom, "img", 0)));
+		assertEquals(-1, dom.getNextSibling(find(dom, "img", 0)));
+	}
+
+	@Test
+	public void testEvaluate_compiledXPath() {
+		CompactDom dom = CompactDom.parse("<html><body><div id='content'><ul class='list'>"
+				+ "<li><a class='det' href='/d1.html'>One</a><li><a class='det' href='/d2.html'>Two</a>"
+				+ "<li><a href='/other.html'>Other</a></ul></div></body></html>");
+		int[] anchors = CompiledXPath.compile("//div[@id='content']/ul[@class]/li/a[@class]")
+				.evaluate(dom, CompactDom.DOCUMENT);
+		int[] texts = CompiledXPath.compile("//ul/li/a/text()").evaluate(dom, CompactDom.DOCUMENT);
+		int[] relative = CompiledXPath.compile("./li/a").evaluate(dom, find(dom, "ul", 0));
+
+		assertEquals(2, anchors.length);
+		assertEquals("/d2.html", dom.getAttribute(anchors[1], "href"));
+		assertEquals(3, texts.length);
+		assertEquals("Other", dom.getText(texts[2]));
+		assertEquals(3, relative.length);
+		assertEquals(Arrays.asList("/d1.html", "/d2.html", "/other.html"), 
+				XPathUtils.getRelativeURLs(dom, "//ul/li/a"));
+	}
+
+	@Test
+	public void testParse_entities() {
+		CompactDom dom = CompactDom.parse("<p title='&laquo;x&raquo;'>Caff&egrave; &copy;&nbsp;l&apos;uno&#233;</p>");
+		int p = find(dom, "p", 0);
+
+		assertEquals("\u00abx\u00bb", dom.getAttribute(p, "title"));
+		assertEquals("Caff\u00e8 \u00a9 l'uno\u00e9", dom.getTextContent(p));
+	}
+
+	@Test
+	public void testExtract_sameAsHtmlUnit() throws Exception {
+		WebClient client = HtmlUtils.makeWebClient(false);
+		List<String> xpaths = Arrays.asList(
+				"//h1/text()",
+				"//p/text()",
+				"//li/a/text()",
+				"//td/text()",
+				"//li/a");
+		for (String url : new String[] {"http://localhost:8081/directory1.html",
+				"http://localhost:8081/detail1.html", "http://localhost:8081/entities.html"}) {
+			HtmlPage page = client.getPage(url);
+			CompactDom dom = CompactDom.parse(page.getWebResponse().getContentAsString());
+			for (String xpath : xpaths) {
+				DataType type = (xpath.endsWith("/text()")) ? new StringDataType() : new UrlDataType();
+				assertEquals(url+" "+xpath, type.extract(page.getByXPath(xpath)),
+						type.extract(dom, XPathUtils.getByXPath(dom, xpath)));
+			}
+		}
+		client.close();
+	}
+
+}
@@ -0,0 +1,64 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+public class CompiledXPathTest {
+	private static HtmlPage page;
+
+	@BeforeClass
+	public static void setUp() throws Exception {
+		WebClient client = HtmlUtils.makeWebClient(false);
+		page = client.getPage("http://localhost:8081/directory1.html");
+		client.close();
+	}
+
+	@Test
+	public void testCompile_dialect() {
+		assertNotNull(CompiledXPath.compile("//div[@id='content']/ul/li/a"));
+		assertNotNull(CompiledXPath.compile("//div[@id=\"content\"]/ul[@class]/li/a[@class and @title]"));
+		assertNotNull(CompiledXPath.compile("/html/body/div/*/h1/text()"));
+		assertNotNull(CompiledXPath.compile("//img[@alt='logo']/@src"));
+		assertNotNull(CompiledXPath.compile("ul/ul/li/a/text()"));
+		assertNotNull(CompiledXPath.compile("./div/div/input[@type=\"text\"]"));
+		assertNull(CompiledXPath.compile("//ul/li[1]/a"));
+		assertNull(CompiledXPath.compile("//a[contains(@href,'detail')]"));
+		assertNull(CompiledXPath.compile("//*[normalize-space(text())='Detail']"));
+		assertNull(CompiledXPath.compile("//a | //img"));
+		assertNull(CompiledXPath.compile("//text()"));
+	}
+
+	@Test
+	public void testGet_cached() {
+		String xpath = "//div[@id='content']/ul/li/a";
+		assertSame(CompiledXPath.get(xpath), CompiledXPath.get(xpath));
+		assertNull(CompiledXPath.get("//ul/li[1]/a"));
+	}
+
+	@Test
+	public void testEvaluate_sameAsHtmlUnit() {
+		String[] xpaths = {"//div[@id='content']/ul/li/a", "//a[@id='page']", "//ul//a",
+				"//li/a/text()", "//li/a/@href", "//*[@id]/h1", "html/head/title/text()"};
+		for (String xpath : xpaths)
+			assertEquals(xpath, page.getByXPath(xpath), CompiledXPath.compile(xpath).evaluate(page));
+	}
+
+	@Test
+	public void testEvaluate_relativeToContext() {
+		DomNode content = page.getFirstByXPath("//div[@id='content']");
+		List<Object> anchors = CompiledXPath.compile("./ul/li/a").evaluate(content);
+
+		assertEquals(content.getByXPath("./ul/li/a"), anchors);
+		assertEquals(4, anchors.size());
+		assertEquals(page.getByXPath("//a"), CompiledXPath.compile("//a").evaluate(content));
+	}
+
+}
@@ -0,0 +1,66 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class PageIndexTest {
+	private final static String DIRECTORY = "target/page_index_test";
+
+	@After
+	public void tearDown() {
+		File dir = new File(DIRECTORY);
+		File[] files = dir.listFiles();
+		if (files!=null) for (File f : files) f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testGet_pendingAndFlushed() throws Exception {
+		try (PageIndex index = new PageIndex(DIRECTORY)) {
+			index.put("http://localhost:8081/detail1.html", "detail", "html/detail1.html");
+			assertEquals(1, index.pending());
+			assertArrayEquals(new String[] {"detail", "html/detail1.html"},
+					index.get("http://localhost:8081/detail1.html"));
+			index.flush();
+			assertEquals(0, index.pending());
+			assertArrayEquals(new String[] {"detail", "html/detail1.html"},
+					index.get("http://localhost:8081/detail1.html"));
+			assertNull(index.get("http://localhost:8081/detail2.html"));
+		}
+	}
+
+	@Test
+	public void testGetPages_scanByClass() throws Exception {
+		try (PageIndex index = new PageIndex(DIRECTORY)) {
+			index.put("http://localhost:8081/detail2.html", "detail", "f2");
+			index.put("http://localhost:8081/directory1.html", "directory", "d1");
+			index.put("http://localhost:8081/detail1.html", "detail", "f1");
+			index.put("http://localhost:8081/detail3.html", "details", "f3");
+			Map<String, String> pages = index.getPages("detail");
+
+			assertEquals(Arrays.asList("http://localhost:8081/detail1.html",
+					"http://localhost:8081/detail2.html"), Arrays.asList(pages.keySet().toArray()));
+			assertEquals("f1", pages.get("http://localhost:8081/detail1.html"));
+		}
+	}
+
+	@Test
+	public void testFlush_replacesClass() throws Exception {
+		try (PageIndex index = new PageIndex(DIRECTORY)) {
+			index.put("http://localhost:8081/page.html", "directory", "f1");
+			index.flush();
+			index.put("http://localhost:8081/page.html", "detail", "f2");
+			index.flush();
+
+			assertTrue(index.getPages("directory").isEmpty());
+			assertEquals("f2", index.getPages("detail").get("http://localhost:8081/page.html"));
+		}
+	}
+
+}
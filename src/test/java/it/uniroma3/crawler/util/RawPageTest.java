@@ -0,0 +1,34 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+public class RawPageTest {
+
+	private byte[] page(String head) {
+		return ("<html><head>"+head+"</head><body></body></html>").getBytes(StandardCharsets.US_ASCII);
+	}
+
+	@Test
+	public void testCharset_fromHeader() {
+		byte[] content = page("<meta charset=\"windows-1252\">");
+		assertEquals(StandardCharsets.UTF_8, RawPage.charset("text/html; charset=UTF-8", content));
+	}
+
+	@Test
+	public void testCharset_fromMetaTag() {
+		byte[] content = page("<meta http-equiv=\"Content-Type\" content=\"text/html; charset=utf-8\">");
+		assertEquals(StandardCharsets.UTF_8, RawPage.charset("text/html", content));
+	}
+
+	@Test
+	public void testCharset_default() {
+		assertEquals(StandardCharsets.ISO_8859_1, RawPage.charset(null, page("")));
+		assertEquals(StandardCharsets.ISO_8859_1,
+				RawPage.charset("text/html; charset=unknown-charset", page("")));
+	}
+
+}
@@ -0,0 +1,40 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class TemplateDictionaryTest {
+
+	private static byte[] page(String title) {
+		return ("<html>\n<head><title>"+title+"</title></head>\n<body>\n"
+				+ "<div id=\"menu\"><a href=\"/\">Home</a><a href=\"/list\">List</a></div>\n"
+				+ "<h1>"+title+"</h1>\n</body>\n</html>\n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testLearn_keepsSharedLines() {
+		byte[] dict = TemplateDictionary.learn(Arrays.asList(page("One"), page("Two"), page("Three")));
+		String template = new String(dict, StandardCharsets.UTF_8);
+
+		assertTrue(template.contains("<div id=\"menu\">"));
+		assertTrue(template.contains("</html>"));
+		assertFalse(template.contains("One"));
+		assertFalse(template.contains("Three"));
+	}
+
+	@Test
+	public void testSample_learnsAfterSamples() {
+		TemplateDictionary templates = new TemplateDictionary(2);
+
+		assertNull(templates.sample("detail", page("One")));
+		assertNull(templates.get("detail"));
+		assertNotNull(templates.sample("detail", page("Two")));
+		assertNotNull(templates.get("detail"));
+		assertNull(templates.get("list"));
+	}
+
+}
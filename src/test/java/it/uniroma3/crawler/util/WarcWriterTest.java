@@ -0,0 +1,126 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class WarcWriterTest {
+	private final static String DIRECTORY = "target/warc_test";
+
+	@After
+	public void tearDown() {
+		File dir = new File(DIRECTORY);
+		File[] files = dir.listFiles();
+		if (files!=null) for (File f : files) f.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testAppend_readBack() throws Exception {
+		String html = "<html><body><h1>Détail</h1></body></html>";
+		Charset utf8 = StandardCharsets.UTF_8;
+		String location;
+		try (WarcWriter warc = new WarcWriter(DIRECTORY, "worker0", 1024*1024)) {
+			warc.append("http://localhost:8081", "<html></html>".getBytes(utf8), utf8);
+			location = warc.append("http://localhost:8081/detail1.html", html.getBytes(utf8), utf8);
+		}
+		RawPage page = WarcReader.read(location);
+
+		assertEquals("http://localhost:8081/detail1.html", page.getUrl().toString());
+		assertEquals(utf8, page.getCharset());
+		assertEquals(html, new String(page.getContent(), page.getCharset()));
+	}
+
+	@Test
+	public void testAppend_rollSegments() throws Exception {
+		byte[] content = new byte[4096];
+		new Random(0).nextBytes(content);
+		String first, last;
+		try (WarcWriter warc = new WarcWriter(DIRECTORY, "worker0", 1000)) {
+			first = warc.append("http://localhost:8081/page0.html", content, StandardCharsets.ISO_8859_1);
+			warc.append("http://localhost:8081/page1.html", content, StandardCharsets.ISO_8859_1);
+			last = warc.append("http://localhost:8081/page2.html", content, StandardCharsets.ISO_8859_1);
+		}
+
+		assertTrue(new File(DIRECTORY, "worker0-00000.warc.gz").exists());
+		assertTrue(new File(DIRECTORY, "worker0-00002.warc.gz").exists());
+		assertArrayEquals(content, WarcReader.read(first).getContent());
+		assertArrayEquals(content, WarcReader.read(last).getContent());
+	}
+
+	@Test
+	public void testAppend_indexAndNewSegmentOnReopen() throws Exception {
+		byte[] content = "<html></html>".getBytes(StandardCharsets.ISO_8859_1);
+		try (WarcWriter warc = new WarcWriter(DIRECTORY, "worker0", 1024*1024)) {
+			warc.append("http://localhost:8081", content, StandardCharsets.ISO_8859_1);
+		}
+		try (WarcWriter warc = new WarcWriter(DIRECTORY, "worker0", 1024*1024)) {
+			warc.append("http://localhost:8081/detail1.html", content, StandardCharsets.ISO_8859_1);
+		}
+		List<String> index = Files.readAllLines(new File(DIRECTORY, "worker0.idx").toPath());
+
+		assertEquals(2, index.size());
+		assertEquals("http://localhost:8081\tworker0-00000.warc.gz\t0", index.get(0));
+		assertEquals("http://localhost:8081/detail1.html\tworker0-00001.warc.gz\t0", index.get(1));
+	}
+
+	@Test
+	public void testAppend_templateDelta() throws Exception {
+		StringBuilder menu = new StringBuilder();
+		Random random = new Random(0);
+		for (int i=0; i<200; i++) {
+			String category = Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+			menu.append("<li><a href=\"/"+category+".html\">"+category+"</a></li>\n");
+		}
+		Charset utf8 = StandardCharsets.UTF_8;
+		String[] locations = new String[4];
+		long[] sizes = new long[4];
+		try (WarcWriter warc = new WarcWriter(DIRECTORY, "worker0", 1024*1024, 2)) {
+			for (int i=0; i<4; i++) {
+				String html = "<html>\n<ul>\n"+menu+"</ul>\n<h1>Detail "+i+"</h1>\n</html>\n";
+				locations[i] = warc.append("http://localhost:8081/detail"+i+".html", "detail",
+						html.getBytes(utf8), utf8);
+				sizes[i] = new File(DIRECTORY, "worker0-00000.warc.gz").length()
+						+ new File(DIRECTORY, "worker0-00000.warc.tpl").length();
+			}
+		}
+
+		assertEquals(1, new File(DIRECTORY).listFiles((d, name) -> name.startsWith("dict-")).length);
+		assertTrue(locations[1].contains("worker0-00000.warc.gz#"));
+		assertTrue(locations[2].contains("worker0-00000.warc.tpl#"));
+		// the gzip segment holds the samples only, and stays a valid gzip file
+		try (InputStream in = new GZIPInputStream(
+				new FileInputStream(new File(DIRECTORY, "worker0-00000.warc.gz")))) {
+			String warc = new String(readAll(in), utf8);
+			assertTrue(warc.contains("<h1>Detail 1</h1>"));
+			assertFalse(warc.contains("<h1>Detail 2</h1>"));
+		}
+		assertTrue((sizes[3]-sizes[2])*4 < sizes[1]-sizes[0]);
+		for (int i=0; i<4; i++) {
+			RawPage page = WarcReader.read(locations[i]);
+			assertEquals("http://localhost:8081/detail"+i+".html", page.getUrl().toString());
+			assertTrue(new String(page.getContent(), utf8).contains("<h1>Detail "+i+"</h1>"));
+		}
+	}
+
+	private static byte[] readAll(InputStream in) throws Exception {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8*1024];
+		int n;
+		while ((n = in.read(buffer))>0) out.write(buffer, 0, n);
+		return out.toByteArray();
+	}
+
+}
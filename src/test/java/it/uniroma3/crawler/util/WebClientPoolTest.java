@@ -0,0 +1,53 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+
+public class WebClientPoolTest {
+	private WebClientPool pool;
+
+	@Before
+	public void setUp() {
+		pool = new WebClientPool(2, 1000);
+	}
+
+	@Test
+	public void testBorrow_reuseSameHost() {
+		WebClient client = pool.borrow("localhost", false, 0);
+		pool.release("localhost", false, client, 0);
+
+		assertNotSame(client, pool.borrow("localhost", true, 10));
+		assertNotSame(client, pool.borrow("127.0.0.1", false, 10));
+		assertSame(client, pool.borrow("localhost", false, 10));
+		assertEquals(0, pool.size());
+	}
+
+	@Test
+	public void testRelease_boundedSize() {
+		WebClient client1 = pool.borrow("localhost", false, 0);
+		WebClient client2 = pool.borrow("localhost", false, 0);
+		WebClient client3 = pool.borrow("localhost", false, 0);
+		pool.release("localhost", false, client1, 0);
+		pool.release("localhost", false, client2, 1);
+		pool.release("localhost", false, client3, 2);
+
+		assertEquals(2, pool.size());
+		assertSame(client3, pool.borrow("localhost", false, 3));
+		assertSame(client2, pool.borrow("localhost", false, 3));
+		assertNotSame(client1, pool.borrow("localhost", false, 3));
+	}
+
+	@Test
+	public void testBorrow_evictIdle() {
+		WebClient client = pool.borrow("localhost", false, 0);
+		pool.release("localhost", false, client, 0);
+
+		assertNotSame(client, pool.borrow("localhost", false, 1000));
+		assertEquals(0, pool.size());
+	}
+
+}
@@ -0,0 +1,56 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+public class XPathPlanTest {
+
+	@Test
+	public void testEvaluate_sameAsHtmlUnit() throws Exception {
+		WebClient client = HtmlUtils.makeWebClient(false);
+		HtmlPage page = client.getPage("http://localhost:8081/directory1.html");
+		client.close();
+		List<String> xpaths = Arrays.asList(
+				"//div[@id='content']/ul/li/a[not(@id)]",
+				"//div[@id='content']/ul/li/a",
+				"//a[@id='page']",
+				"//ul//a",
+				"//li/a/text()",
+				"//li/a/@href",
+				"html/body/div/div/div/ul/li/a",
+				"/html/body/div[@id]/div/*/h1");
+		Map<String, List<Object>> matches = new XPathPlan(xpaths).evaluate(page);
+
+		for (String xpath : xpaths)
+			assertEquals(xpath, page.getByXPath(xpath), matches.get(xpath));
+		assertEquals(4, matches.get("//div[@id='content']/ul/li/a").size());
+	}
+
+	@Test
+	public void testEvaluate_compactDom() {
+		CompactDom dom = CompactDom.parse("<div id='menu'><a href='/'>Home</a><a class='x' href='/l'>List</a>"
+				+ "</div><div id='content'><ul><li><a class='x' href='/d1'>One</a>"
+				+ "<li><a class='x' title='t' href='/d2'>Two</a></ul></div>");
+		List<String> xpaths = Arrays.asList(
+				"//div[@id='menu']/a",
+				"//div[@id='content']/ul/li/a[@class]",
+				"//div[@id='content']/ul/li/a[@class and @title]",
+				"//a[@class='x']/text()");
+		Map<String, int[]> matches = new XPathPlan(xpaths).evaluate(dom);
+
+		for (String xpath : xpaths)
+			assertArrayEquals(xpath, XPathUtils.getByXPath(dom, xpath), matches.get(xpath));
+		assertEquals(Arrays.asList("/d1", "/d2"), XPathUtils.getRelativeURLs(dom, 
+				matches.get("//div[@id='content']/ul/li/a[@class]")));
+	}
+
+}
@@ -0,0 +1,37 @@
+package it.uniroma3.crawler.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+
+import com.gargoylesoftware.htmlunit.WebClient;
+import com.gargoylesoftware.htmlunit.html.DomElement;
+import com.gargoylesoftware.htmlunit.html.DomNode;
+import com.gargoylesoftware.htmlunit.html.HtmlPage;
+
+public class XPathUtilsTest {
+
+	@Test
+	public void testGetUniqueTexts_sameAsXPaths() throws Exception {
+		WebClient client = HtmlUtils.makeWebClient(false);
+		for (String url : new String[] {"http://localhost:8081/directory1.html",
+				"http://localhost:8081/detail1.html"}) {
+			HtmlPage page = client.getPage(url);
+			Map<String, DomNode> expected = new HashMap<>();
+			for (String w : XPathUtils.getTexts(page, 60)) {
+				Optional<DomNode> node =
+						XPathUtils.getUniqueByXPath(page, "//*[normalize-space(text())='"+w+"']");
+				node.ifPresent(n -> expected.put(w, n));
+			}
+			Map<String, DomElement> unique = XPathUtils.getUniqueTexts(page, 60);
+
+			assertEquals(url, expected, unique);
+		}
+		client.close();
+	}
+
+}